@@ -0,0 +1,32 @@
+#!/bin/sh
+# Собирает bin/npl.jar и записывает архив AppCDS bin/npl.jsa по тренировочному прогону.
+# Архив привязан к конкретной JVM и jar-файлу, поэтому пересобирается вместе с ними.
+#   ./build.sh            сборка и архив
+#   ./build.sh --no-cds   только сборка
+set -e
+cd "$(dirname "$0")"
+
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+JAVAC=${JAVA_HOME:+$JAVA_HOME/bin/}javac
+JAR=${JAVA_HOME:+$JAVA_HOME/bin/}jar
+
+rm -rf bin/classes bin/npl.jsa
+mkdir -p bin/classes
+"$JAVAC" -encoding UTF-8 -d bin/classes $(find src -name '*.java')
+# без сжатия: классы не распаковываются при старте, а bin/npl находит Main-Class простым grep
+"$JAR" --create --no-compress --file bin/npl.jar --main-class com.npl.Main -C bin/classes .
+echo "built bin/npl.jar"
+
+[ "$1" = "--no-cds" ] && exit 0
+
+# динамический архив (-XX:ArchiveClassesAtExit) появился в JDK 13
+version=$("$JAVA" -XshowSettings:properties -version 2>&1 | sed -n 's/^ *java\.specification\.version = //p')
+if [ "${version%%.*}" -lt 13 ] 2>/dev/null; then
+    echo "warning: JDK $version cannot record a dynamic CDS archive (13+ required), skipping" >&2
+    exit 0
+fi
+
+# тренировочный прогон загружает классы интерпретатора, словарей, встроенных функций
+# и параллельного for; они попадают в архив уже разобранными и проверенными
+"$JAVA" -XX:ArchiveClassesAtExit=bin/npl.jsa -jar bin/npl.jar scripts/training.npl > /dev/null
+echo "recorded bin/npl.jsa"
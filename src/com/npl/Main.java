@@ -1,11 +1,65 @@
 package com.npl;
 
+import com.npl.metrics.NPLMetrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// npl [--flat] [--metrics] [файл | -]
+// без файла или с '-' скрипт читается из stdin
 public class Main {
+    private static final String USAGE = "usage: npl [--flat] [--metrics] [file | -]";
+
     public static void main(String[] args) {
-        String code = "for (i = 0; i < 10; i++) { \nprint(i);\n}";
-        
-        String result = NPL.interpret(code);
-        System.out.println("код:\n"+ code + "\n\nрезультат:");
-        System.out.println(result);
+        boolean flat = false;
+        boolean metrics = false;
+        String file = null;
+        for (String arg : args) {
+            if (arg.equals("--flat")) {
+                flat = true;
+            } else if (arg.equals("--metrics")) {
+                metrics = true;
+            } else if (arg.equals("-h") || arg.equals("--help")) {
+                System.out.println(USAGE);
+                return;
+            } else if (arg.startsWith("--") || file != null) {
+                System.err.println(USAGE);
+                System.exit(2);
+            } else {
+                file = arg;
+            }
+        }
+
+        String code;
+        try {
+            code = file == null || file.equals("-")
+                    ? new String(System.in.readAllBytes(), StandardCharsets.UTF_8)
+                    : new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Cannot read " + (file == null ? "stdin" : file) + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        // без --metrics замеры не ведутся, и java.management не загружается
+        NPLMetrics.get().setEnabled(metrics);
+        if (metrics) {
+            NPLMetrics.registerMBean();
+        }
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        try {
+            out.print(flat ? NPL.interpretFlat(code) : NPL.interpret(code));
+            out.flush();
+        } catch (RuntimeException e) {
+            out.flush();
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        if (metrics) {
+            System.err.print(NPLMetrics.snapshot());
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,110 @@
 package com.npl;
 
+import com.npl.analysis.TypeInference;
+import com.npl.analysis.TypeReport;
 import com.npl.lexer.Lexer;
 import com.npl.parser.Parser;
+import com.npl.ast.FlatProgram;
 import com.npl.ast.Program;
+import com.npl.interop.NativeRegistry;
+import com.npl.interpreter.FlatInterpreterEngine;
 import com.npl.interpreter.InterpreterEngine;
+import com.npl.metrics.NPLMetrics;
 
 public class NPL {
     public static String interpret(String code) {
-        Lexer lexer = new Lexer(code);
-        Parser parser = new Parser(lexer);
-        Program program = parser.parseProgram();
-        InterpreterEngine interpreter = new InterpreterEngine();
-        interpreter.interpret(program);
-        return interpreter.getOutput();
+        return interpret(code, NativeRegistry.global());
     }
-}
\ No newline at end of file
+
+    public static String interpret(String code, NativeRegistry natives) {
+        NPLMetrics metrics = NPLMetrics.get();
+        if (!metrics.isEnabled()) {
+            Lexer lexer = new Lexer(code);
+            Parser parser = new Parser(lexer, natives);
+            Program program = parser.parseProgram();
+            checkTypes(program, natives);
+            InterpreterEngine interpreter = new InterpreterEngine(natives);
+            interpreter.interpret(program);
+            return interpreter.getOutput();
+        }
+
+        long start = System.nanoTime();
+        try {
+            Lexer lexer = new Lexer(code);
+            lexer.enableTiming();
+            Parser parser = new Parser(lexer, natives);
+            Program program = parser.parseProgram();
+            long parsed = System.nanoTime();
+            checkTypes(program, natives);
+            long checked = System.nanoTime();
+
+            InterpreterEngine interpreter = new InterpreterEngine(natives);
+            long allocBefore = metrics.currentThreadAllocatedBytes();
+            interpreter.interpret(program);
+            String output = interpreter.getOutput();
+            long allocAfter = metrics.currentThreadAllocatedBytes();
+            long end = System.nanoTime();
+
+            long lexNanos = lexer.getElapsedNanos();
+            metrics.recordInterpretation(lexNanos, parsed - start - lexNanos, checked - parsed, end - checked,
+                    end - start, lexer.getTokenCount(), interpreter.getStatementsExecuted(),
+                    NPLMetrics.utf8Length(output),
+                    allocBefore < 0 ? -1 : allocAfter - allocBefore);
+            return output;
+        } catch (RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        }
+    }
+
+    // режим с компактным представлением AST; типы проверяются во время выполнения
+    public static String interpretFlat(String code) {
+        return interpretFlat(code, NativeRegistry.global());
+    }
+
+    public static String interpretFlat(String code, NativeRegistry natives) {
+        NPLMetrics metrics = NPLMetrics.get();
+        if (!metrics.isEnabled()) {
+            FlatProgram program = new Parser(new Lexer(code), natives).parseFlatProgram();
+            FlatInterpreterEngine interpreter = new FlatInterpreterEngine(program, natives);
+            interpreter.interpret();
+            return interpreter.getOutput();
+        }
+
+        long start = System.nanoTime();
+        try {
+            Lexer lexer = new Lexer(code);
+            lexer.enableTiming();
+            FlatProgram program = new Parser(lexer, natives).parseFlatProgram();
+            long parsed = System.nanoTime();
+
+            FlatInterpreterEngine interpreter = new FlatInterpreterEngine(program, natives);
+            long allocBefore = metrics.currentThreadAllocatedBytes();
+            interpreter.interpret();
+            String output = interpreter.getOutput();
+            long allocAfter = metrics.currentThreadAllocatedBytes();
+            long end = System.nanoTime();
+
+            long lexNanos = lexer.getElapsedNanos();
+            metrics.recordInterpretation(lexNanos, parsed - start - lexNanos, -1, end - parsed,
+                    end - start, lexer.getTokenCount(), interpreter.getStatementsExecuted(),
+                    NPLMetrics.utf8Length(output),
+                    allocBefore < 0 ? -1 : allocAfter - allocBefore);
+            return output;
+        } catch (RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        }
+    }
+
+    public static TypeReport analyze(String code) {
+        return TypeInference.analyze(new Parser(new Lexer(code)).parseProgram());
+    }
+
+    private static void checkTypes(Program program, NativeRegistry natives) {
+        TypeReport report = TypeInference.analyze(program, natives);
+        if (report.hasErrors()) {
+            throw new RuntimeException("Type error: " + String.join("\n", report.getErrors()));
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.npl.analysis;
+
+import com.npl.ast.*;
+import com.npl.interop.NativeFunction;
+import com.npl.interop.NativeRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// потоково-чувствительный вывод типов: проставляет Expression.inferredType
+// и собирает ошибки. Ошибка на пути, который выполняется всегда, гарантированно
+// произойдёт при запуске; в ветвях if и телах циклов код может и не выполниться,
+// поэтому такие ошибки — только предупреждения
+public class TypeInference {
+    private final NativeRegistry natives;
+    private final List<String> errors = new ArrayList<>();
+    private final List<String> warnings = new ArrayList<>();
+    // false, пока ищем неподвижную точку цикла
+    private boolean record = true;
+    // false внутри ветвей и тел циклов
+    private boolean mustExecute = true;
+    private int expressions;
+    private int typedExpressions;
+    private int variableReads;
+    private int typedVariableReads;
+
+    private TypeInference(NativeRegistry natives) {
+        this.natives = natives;
+    }
+
+    public static TypeReport analyze(Program program) {
+        return analyze(program, NativeRegistry.global());
+    }
+
+    // заодно связывает вызовы функций с реестром
+    public static TypeReport analyze(Program program, NativeRegistry natives) {
+        TypeInference inference = new TypeInference(natives);
+        inference.analyzeBlock(program.statements, new HashMap<>());
+        return new TypeReport(inference.errors, inference.warnings,
+                inference.expressions, inference.typedExpressions,
+                inference.variableReads, inference.typedVariableReads);
+    }
+
+    private void analyzeBlock(List<Statement> statements, Map<String, ValueType> env) {
+        for (Statement stmt : statements) {
+            analyzeStatement(stmt, env);
+        }
+    }
+
+    private void analyzeStatement(Statement stmt, Map<String, ValueType> env) {
+        if (stmt instanceof PrintStatement) {
+            PrintStatement ps = (PrintStatement) stmt;
+            for (Expression expr : ps.expressions) {
+                infer(expr, env);
+            }
+            infer(ps.end, env);
+        } else if (stmt instanceof AssignmentStatement) {
+            AssignmentStatement as = (AssignmentStatement) stmt;
+            env.put(as.variable, infer(as.expression, env));
+        } else if (stmt instanceof IfStatement) {
+            IfStatement is = (IfStatement) stmt;
+            infer(is.condition, env);
+            boolean outer = mustExecute;
+            mustExecute = false;
+            Map<String, ValueType> thenEnv = new HashMap<>(env);
+            analyzeBlock(is.thenBranch, thenEnv);
+            Map<String, ValueType> elseEnv = new HashMap<>(env);
+            if (is.elseBranch != null) {
+                analyzeBlock(is.elseBranch, elseEnv);
+            }
+            mustExecute = outer;
+            replace(env, join(thenEnv, elseEnv));
+        } else if (stmt instanceof WhileStatement) {
+            WhileStatement ws = (WhileStatement) stmt;
+            analyzeLoop(env, ws.condition, ws.body, null);
+        } else if (stmt instanceof ParallelForStatement) {
+            analyzeParallelFor((ParallelForStatement) stmt, env);
+        } else if (stmt instanceof ForStatement) {
+            ForStatement fs = (ForStatement) stmt;
+            analyzeStatement(fs.initialization, env);
+            analyzeLoop(env, fs.condition, fs.body, fs.update);
+        } else if (stmt instanceof PostfixExpressionStatement) {
+            PostfixExpressionStatement ps = (PostfixExpressionStatement) stmt;
+            ValueType t = env.getOrDefault(ps.getVarName(), ValueType.UNDEFINED);
+            if (record) {
+                ps.setTargetType(t);
+            }
+            if (t == ValueType.UNDEFINED) {
+                error("Undefined variable: " + ps.getVarName());
+            } else if (isNonNumber(t)) {
+                error("Only numbers can be incremented/decremented: " + ps + " on " + t);
+            }
+            // ++/-- сохраняет вид числа
+            env.put(ps.getVarName(), t.isNumeric() ? t : ValueType.UNKNOWN);
+        } else if (stmt instanceof CompoundAssignmentStatement) {
+            CompoundAssignmentStatement cs = (CompoundAssignmentStatement) stmt;
+            ValueType t = env.getOrDefault(cs.variable, ValueType.UNDEFINED);
+            ValueType r = infer(cs.expression, env);
+            if (t == ValueType.UNDEFINED) {
+                error("Undefined variable: " + cs.variable);
+            } else if (isNonNumber(t) || isNonNumber(r)) {
+                error("Unsupported operand types for '" + cs.operator + "=': " + t + " and " + r);
+            }
+            env.put(cs.variable, arithmeticResult(cs.operator, t, r));
+        } else if (stmt instanceof IndexAssignmentStatement) {
+            IndexAssignmentStatement is = (IndexAssignmentStatement) stmt;
+            checkMap(infer(is.target, env), "Only maps support item assignment");
+            checkKey(infer(is.key, env));
+            ValueType r = infer(is.expression, env);
+            if (is.operator != null && isNonNumber(r)) {
+                error("Unsupported operand types for '" + is.operator + "=': " + r);
+            }
+        } else if (stmt instanceof ForInStatement) {
+            ForInStatement fs = (ForInStatement) stmt;
+            checkMap(infer(fs.iterable, env), "Only maps can be iterated");
+            // ключи бывают и строками, и числами, а при пустом словаре переменная не присваивается,
+            // так что её тип и внутри, и после цикла не доказан
+            env.put(fs.variable, ValueType.UNKNOWN);
+            analyzeLoop(env, null, fs.body, null);
+        } else if (stmt instanceof ExpressionStatement) {
+            infer(((ExpressionStatement) stmt).expression, env);
+        }
+    }
+
+    private void checkMap(ValueType t, String message) {
+        if (t != ValueType.MAP && t != ValueType.UNKNOWN) {
+            error(message + ", got " + t);
+        }
+    }
+
+    private void checkKey(ValueType t) {
+        if (t == ValueType.NONE || t == ValueType.MAP) {
+            error("Map keys must be strings or numbers, got " + t);
+        }
+    }
+
+    private void analyzeLoop(Map<String, ValueType> env, Expression condition,
+                             List<Statement> body, Statement update) {
+        boolean outer = record;
+        record = false;
+        Map<String, ValueType> head = new HashMap<>(env);
+        while (true) {
+            Map<String, ValueType> iteration = new HashMap<>(head);
+            analyzeIteration(iteration, condition, body, update);
+            Map<String, ValueType> next = join(head, iteration);
+            if (next.equals(head)) {
+                break;
+            }
+            head = next;
+        }
+        record = outer;
+        analyzeIteration(new HashMap<>(head), condition, body, update);
+        // выход из цикла происходит после проверки условия в голове
+        replace(env, head);
+    }
+
+    // тело выполняется на копии окружения: локальные переменные тела наружу не выходят,
+    // а чтение локальной переменной до записи в той же итерации считается ошибкой
+    private void analyzeParallelFor(ParallelForStatement pf, Map<String, ValueType> env) {
+        ValueType start = infer(pf.start, env);
+        ValueType bound = infer(pf.bound, env);
+        if (isNonNumber(start) || isNonNumber(bound)) {
+            error("parallel for bounds must be numbers: " + start + " and " + bound);
+        }
+        if (start == ValueType.NUMBER) {
+            error("parallel for start must be an integer");
+        }
+        // начало не целым числом отвергается при выполнении до первой итерации
+        ValueType counter = ValueType.INTEGER;
+        Map<String, ValueType> seed = new HashMap<>();
+        for (String r : pf.reductions.keySet()) {
+            ValueType t = env.getOrDefault(r, ValueType.UNDEFINED);
+            if (t == ValueType.UNDEFINED) {
+                error("Reduction variable must be initialized before parallel for: " + r);
+            } else if (isNonNumber(t)) {
+                error("Reduction variable must be a number: " + r + " is " + t);
+            }
+            // начальное значение: 0 для sum, ±бесконечность для min/max
+            seed.put(r, pf.reductions.get(r).equals("sum") ? ValueType.INTEGER : ValueType.UNKNOWN);
+        }
+        // кусок выполняет много итераций подряд, и переменные редукции переходят из одной
+        // в другую, поэтому их тип ищется как неподвижная точка, как в analyzeLoop.
+        // Остальные переменные тела так не переходят: чтение до записи в той же итерации
+        // даёт UNDEFINED и не получает доказанного типа, а внешние переменные тело не пишет
+        boolean outer = mustExecute;
+        mustExecute = false;
+        boolean recording = record;
+        record = false;
+        Map<String, ValueType> bodyEnv;
+        while (true) {
+            bodyEnv = parallelBodyEnv(env, pf.variable, counter, seed);
+            analyzeBlock(pf.body, bodyEnv);
+            Map<String, ValueType> next = new HashMap<>();
+            for (String r : seed.keySet()) {
+                next.put(r, seed.get(r).join(bodyEnv.get(r)));
+            }
+            if (next.equals(seed)) {
+                break;
+            }
+            seed = next;
+        }
+        record = recording;
+        bodyEnv = parallelBodyEnv(env, pf.variable, counter, seed);
+        analyzeBlock(pf.body, bodyEnv);
+        mustExecute = outer;
+        for (Map.Entry<String, String> e : pf.reductions.entrySet()) {
+            String r = e.getKey();
+            ValueType after = bodyEnv.get(r);
+            if (isNonNumber(after)) {
+                error("Reduction variable must stay a number: " + r + " is " + after);
+            }
+            boolean integerSum = e.getValue().equals("sum")
+                    && env.get(r) == ValueType.INTEGER && seed.get(r) == ValueType.INTEGER;
+            env.put(r, integerSum ? ValueType.INTEGER : ValueType.UNKNOWN);
+        }
+        env.put(pf.variable, counter);
+    }
+
+    private static Map<String, ValueType> parallelBodyEnv(Map<String, ValueType> env, String variable,
+                                                          ValueType counter, Map<String, ValueType> seed) {
+        Map<String, ValueType> bodyEnv = new HashMap<>(env);
+        bodyEnv.put(variable, counter);
+        bodyEnv.putAll(seed);
+        return bodyEnv;
+    }
+
+    private void analyzeIteration(Map<String, ValueType> env, Expression condition,
+                                  List<Statement> body, Statement update) {
+        // условие проверяется хотя бы раз, тело может не выполниться ни разу
+        if (condition != null) {
+            infer(condition, env);
+        }
+        boolean outer = mustExecute;
+        mustExecute = false;
+        analyzeBlock(body, env);
+        if (update != null) {
+            analyzeStatement(update, env);
+        }
+        mustExecute = outer;
+    }
+
+    private ValueType infer(Expression expr, Map<String, ValueType> env) {
+        ValueType t;
+        if (expr instanceof IntegerExpression || expr instanceof BooleanExpression) {
+            t = ValueType.INTEGER;
+        } else if (expr instanceof NumberExpression) {
+            t = ValueType.NUMBER;
+        } else if (expr instanceof StringExpression) {
+            t = ValueType.STRING;
+        } else if (expr instanceof NoneExpression) {
+            t = ValueType.NONE;
+        } else if (expr instanceof VariableExpression) {
+            String name = ((VariableExpression) expr).name;
+            t = env.getOrDefault(name, ValueType.UNDEFINED);
+            if (t == ValueType.UNDEFINED) {
+                error("Undefined variable: " + name);
+                t = ValueType.UNKNOWN;
+            }
+            if (record) {
+                variableReads++;
+                if (t != ValueType.UNKNOWN) typedVariableReads++;
+            }
+        } else if (expr instanceof BinaryExpression) {
+            BinaryExpression be = (BinaryExpression) expr;
+            ValueType l = infer(be.left, env);
+            ValueType r = infer(be.right, env);
+            if (isNonNumber(l) || isNonNumber(r)) {
+                error("Unsupported operand types for '" + be.operator + "': " + l + " and " + r);
+            }
+            t = arithmeticResult(be.operator, l, r);
+        } else if (expr instanceof CallExpression) {
+            t = inferCall((CallExpression) expr, env);
+        } else if (expr instanceof MapExpression) {
+            MapExpression me = (MapExpression) expr;
+            for (int i = 0; i < me.keys.size(); i++) {
+                checkKey(infer(me.keys.get(i), env));
+                infer(me.values.get(i), env);
+            }
+            t = ValueType.MAP;
+        } else if (expr instanceof IndexExpression) {
+            IndexExpression ie = (IndexExpression) expr;
+            checkMap(infer(ie.target, env), "Only maps can be indexed");
+            checkKey(infer(ie.key, env));
+            t = ValueType.UNKNOWN;
+        } else if (expr instanceof PostfixExpression) {
+            infer(((PostfixExpression) expr).expression, env);
+            t = ValueType.UNKNOWN;
+        } else {
+            t = ValueType.UNKNOWN;
+        }
+        if (record) {
+            expr.inferredType = t;
+            expressions++;
+            if (t != ValueType.UNKNOWN) typedExpressions++;
+        }
+        return t;
+    }
+
+    private ValueType inferCall(CallExpression call, Map<String, ValueType> env) {
+        List<ValueType> args = new ArrayList<>();
+        for (Expression arg : call.arguments) {
+            args.add(infer(arg, env));
+        }
+        NativeFunction fn = natives.lookup(call.name);
+        if (fn == null) {
+            error("Unknown function: " + call.name);
+            return ValueType.UNKNOWN;
+        }
+        call.target = fn;
+        if (fn.arity != args.size()) {
+            error("Function " + call.name + " expects " + fn.arity + " argument(s) but got " + args.size());
+        } else {
+            for (int i = 0; i < args.size(); i++) {
+                if (fn.isNumericParameter(i) && isNonNumber(args.get(i))) {
+                    error("Argument " + (i + 1) + " of " + call.name + " must be a number, got " + args.get(i));
+                } else if (fn.parameterType(i) == ValueType.MAP && args.get(i) != ValueType.MAP
+                        && args.get(i) != ValueType.UNKNOWN) {
+                    error("Argument " + (i + 1) + " of " + call.name + " must be a map, got " + args.get(i));
+                }
+            }
+        }
+        return fn.resultType;
+    }
+
+    // бинарные операции либо возвращают число, либо падают; сравнения и and/or дают целое,
+    // '/' всегда double, long с long — long, при участии double — double
+    private static ValueType arithmeticResult(String op, ValueType l, ValueType r) {
+        switch (op) {
+            case "+": case "-": case "*":
+                if (l == ValueType.INTEGER && r == ValueType.INTEGER) return ValueType.INTEGER;
+                if (l == ValueType.NUMBER || r == ValueType.NUMBER) return ValueType.NUMBER;
+                return ValueType.UNKNOWN;
+            case "/":
+                return ValueType.NUMBER;
+            default:
+                return ValueType.INTEGER;
+        }
+    }
+
+    private static boolean isNonNumber(ValueType t) {
+        return t == ValueType.STRING || t == ValueType.NONE || t == ValueType.MAP;
+    }
+
+    private void error(String message) {
+        if (record) {
+            (mustExecute ? errors : warnings).add(message);
+        }
+    }
+
+    private static Map<String, ValueType> join(Map<String, ValueType> a, Map<String, ValueType> b) {
+        Map<String, ValueType> result = new HashMap<>();
+        for (Map.Entry<String, ValueType> e : a.entrySet()) {
+            result.put(e.getKey(), e.getValue().join(b.getOrDefault(e.getKey(), ValueType.UNDEFINED)));
+        }
+        for (Map.Entry<String, ValueType> e : b.entrySet()) {
+            if (!a.containsKey(e.getKey())) {
+                result.put(e.getKey(), e.getValue().join(ValueType.UNDEFINED));
+            }
+        }
+        return result;
+    }
+
+    private static void replace(Map<String, ValueType> env, Map<String, ValueType> state) {
+        env.clear();
+        env.putAll(state);
+    }
+}
@@ -0,0 +1,64 @@
+package com.npl.analysis;
+
+import java.util.List;
+
+public class TypeReport {
+    private final List<String> errors;
+    // ошибки в коде, который может не выполниться
+    private final List<String> warnings;
+    private final int expressions;
+    private final int typedExpressions;
+    private final int variableReads;
+    private final int typedVariableReads;
+
+    public TypeReport(List<String> errors, List<String> warnings,
+                      int expressions, int typedExpressions,
+                      int variableReads, int typedVariableReads) {
+        this.errors = errors;
+        this.warnings = warnings;
+        this.expressions = expressions;
+        this.typedExpressions = typedExpressions;
+        this.variableReads = variableReads;
+        this.typedVariableReads = typedVariableReads;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    public int getExpressions() {
+        return expressions;
+    }
+
+    public int getTypedExpressions() {
+        return typedExpressions;
+    }
+
+    public int getVariableReads() {
+        return variableReads;
+    }
+
+    public int getTypedVariableReads() {
+        return typedVariableReads;
+    }
+
+    // доля выражений с доказанным типом, 0..1
+    public double getCoverage() {
+        return expressions == 0 ? 1.0 : (double) typedExpressions / expressions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("typed %d/%d expressions (%.1f%%), %d/%d variable reads, %d error(s), %d warning(s)",
+                typedExpressions, expressions, getCoverage() * 100,
+                typedVariableReads, variableReads, errors.size(), warnings.size());
+    }
+}
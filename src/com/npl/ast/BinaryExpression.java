@@ -4,10 +4,12 @@ public class BinaryExpression extends Expression {
     public final Expression left;
     public final String operator;
     public final Expression right;
-    
+    public final byte opCode; // FlatProgram.OP_*
+
     public BinaryExpression(Expression left, String operator, Expression right) {
         this.left = left;
         this.operator = operator;
         this.right = right;
+        this.opCode = FlatProgram.operatorCode(operator);
     }
 }
\ No newline at end of file
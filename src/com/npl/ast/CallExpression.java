@@ -0,0 +1,17 @@
+package com.npl.ast;
+
+import com.npl.interop.NativeFunction;
+
+import java.util.List;
+
+public class CallExpression extends Expression {
+    public final String name;
+    public final List<Expression> arguments;
+    // связывается TypeInference один раз до выполнения
+    public NativeFunction target;
+
+    public CallExpression(String name, List<Expression> arguments) {
+        this.name = name;
+        this.arguments = arguments;
+    }
+}
@@ -0,0 +1,20 @@
+package com.npl.ast;
+
+public class CompoundAssignmentStatement extends Statement {
+    public final String variable;
+    public final String operator; // "+", "-", "*", "/"
+    public final Expression expression;
+    public final byte opCode; // FlatProgram.OP_*
+
+    public CompoundAssignmentStatement(String variable, String operator, Expression expression) {
+        this.variable = variable;
+        this.operator = operator;
+        this.expression = expression;
+        this.opCode = FlatProgram.operatorCode(operator);
+    }
+
+    @Override
+    public String toString() {
+        return variable + " " + operator + "= ...";
+    }
+}
@@ -1,3 +1,6 @@
 package com.npl.ast;
 
-public abstract class Expression extends ASTNode { }
\ No newline at end of file
+public abstract class Expression extends ASTNode {
+    // заполняется TypeInference до выполнения
+    public ValueType inferredType = ValueType.UNKNOWN;
+}
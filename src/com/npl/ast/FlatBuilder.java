@@ -0,0 +1,235 @@
+package com.npl.ast;
+
+import com.npl.lexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parser передаёт сюда каждый оператор верхнего уровня сразу после разбора,
+// так что одновременно живёт дерево объектов только одного оператора
+public final class FlatBuilder {
+    private int size;
+    private byte[] kind = new byte[64];
+    private byte[] op = new byte[64];
+    private int[] a = new int[64];
+    private int[] b = new int[64];
+    private int[] c = new int[64];
+
+    private int listSize;
+    private int[] lists = new int[64];
+
+    private final IntList topLevel = new IntList();
+    private final List<Double> numbers = new ArrayList<>();
+    private final Map<Double, Integer> numberIndex = new HashMap<>();
+    private final List<Long> integers = new ArrayList<>();
+    private final Map<Long, Integer> integerIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> symbolIndex = new HashMap<>();
+    private final List<String> callNames = new ArrayList<>();
+
+    public void add(Statement stmt) {
+        statement(stmt, topLevel);
+    }
+
+    public FlatProgram build() {
+        int body = list(topLevel);
+        double[] nums = new double[numbers.size()];
+        for (int i = 0; i < nums.length; i++) {
+            nums[i] = numbers.get(i);
+        }
+        long[] ints = new long[integers.size()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = integers.get(i);
+        }
+        return new FlatProgram(size,
+                Arrays.copyOf(kind, size), Arrays.copyOf(op, size),
+                Arrays.copyOf(a, size), Arrays.copyOf(b, size), Arrays.copyOf(c, size),
+                Arrays.copyOf(lists, listSize), body, nums, ints,
+                strings.toArray(new String[0]), symbols.toArray(new String[0]),
+                callNames.toArray(new String[0]));
+    }
+
+    private void statement(Statement stmt, IntList out) {
+        if (stmt instanceof PrintStatement) {
+            PrintStatement ps = (PrintStatement) stmt;
+            out.add(node(FlatProgram.PRINT, 0, expressions(ps.expressions), expression(ps.end), -1));
+        } else if (stmt instanceof AssignmentStatement) {
+            AssignmentStatement as = (AssignmentStatement) stmt;
+            out.add(node(FlatProgram.ASSIGN, 0, symbol(as.variable), expression(as.expression), -1));
+        } else if (stmt instanceof CompoundAssignmentStatement) {
+            CompoundAssignmentStatement cs = (CompoundAssignmentStatement) stmt;
+            out.add(node(FlatProgram.COMPOUND, FlatProgram.operatorCode(cs.operator),
+                    symbol(cs.variable), expression(cs.expression), -1));
+        } else if (stmt instanceof PostfixExpressionStatement) {
+            PostfixExpressionStatement ps = (PostfixExpressionStatement) stmt;
+            byte code = ps.getOp() == TokenType.INCREMENT ? FlatProgram.OP_ADD : FlatProgram.OP_SUB;
+            out.add(node(FlatProgram.POSTFIX, code, symbol(ps.getVarName()), -1, -1));
+        } else if (stmt instanceof IfStatement) {
+            IfStatement is = (IfStatement) stmt;
+            int cond = expression(is.condition);
+            int then = block(is.thenBranch);
+            int otherwise = is.elseBranch == null ? -1 : block(is.elseBranch);
+            out.add(node(FlatProgram.IF, 0, cond, then, otherwise));
+        } else if (stmt instanceof WhileStatement) {
+            WhileStatement ws = (WhileStatement) stmt;
+            int cond = expression(ws.condition);
+            out.add(node(FlatProgram.WHILE, 0, cond, block(ws.body), -1));
+        } else if (stmt instanceof ParallelForStatement) {
+            throw new RuntimeException("parallel for is not supported by the flat representation");
+        } else if (stmt instanceof ForStatement) {
+            ForStatement fs = (ForStatement) stmt;
+            statement(fs.initialization, out);
+            int cond = expression(fs.condition);
+            int body = block(fs.body);
+            IntList update = new IntList();
+            statement(fs.update, update);
+            out.add(node(FlatProgram.FOR, 0, cond, body, update.get(0)));
+        } else if (stmt instanceof IndexAssignmentStatement) {
+            IndexAssignmentStatement is = (IndexAssignmentStatement) stmt;
+            int target = expression(is.target);
+            int key = expression(is.key);
+            out.add(node(FlatProgram.INDEX_SET, is.opCode, target, key, expression(is.expression)));
+        } else if (stmt instanceof ForInStatement) {
+            ForInStatement fs = (ForInStatement) stmt;
+            int iterable = expression(fs.iterable);
+            out.add(node(FlatProgram.FOR_IN, 0, symbol(fs.variable), iterable, block(fs.body)));
+        } else if (stmt instanceof ExpressionStatement) {
+            out.add(node(FlatProgram.EXPR, 0, expression(((ExpressionStatement) stmt).expression), -1, -1));
+        } else {
+            throw new RuntimeException("Unknown statement type: " + stmt.getClass());
+        }
+    }
+
+    private int expression(Expression expr) {
+        if (expr instanceof IntegerExpression) {
+            return node(FlatProgram.INTEGER, 0, integer(((IntegerExpression) expr).value), -1, -1);
+        } else if (expr instanceof NumberExpression) {
+            return node(FlatProgram.NUMBER, 0, number(((NumberExpression) expr).value), -1, -1);
+        } else if (expr instanceof BooleanExpression) {
+            return node(FlatProgram.INTEGER, 0, integer(((BooleanExpression) expr).getValue() ? 1 : 0), -1, -1);
+        } else if (expr instanceof StringExpression) {
+            return node(FlatProgram.STRING, 0, string(((StringExpression) expr).value), -1, -1);
+        } else if (expr instanceof NoneExpression) {
+            return node(FlatProgram.NONE, 0, -1, -1, -1);
+        } else if (expr instanceof VariableExpression) {
+            return node(FlatProgram.VAR, 0, symbol(((VariableExpression) expr).name), -1, -1);
+        } else if (expr instanceof BinaryExpression) {
+            BinaryExpression be = (BinaryExpression) expr;
+            int left = expression(be.left);
+            int right = expression(be.right);
+            return node(FlatProgram.BINARY, FlatProgram.operatorCode(be.operator), left, right, -1);
+        } else if (expr instanceof CallExpression) {
+            CallExpression call = (CallExpression) expr;
+            int args = expressions(call.arguments);
+            callNames.add(call.name);
+            return node(FlatProgram.CALL, 0, callNames.size() - 1, args, -1);
+        } else if (expr instanceof IndexExpression) {
+            IndexExpression ie = (IndexExpression) expr;
+            int target = expression(ie.target);
+            return node(FlatProgram.INDEX, 0, target, expression(ie.key), -1);
+        } else if (expr instanceof MapExpression) {
+            MapExpression me = (MapExpression) expr;
+            IntList ids = new IntList();
+            for (int i = 0; i < me.keys.size(); i++) {
+                ids.add(expression(me.keys.get(i)));
+                ids.add(expression(me.values.get(i)));
+            }
+            return node(FlatProgram.MAP, 0, list(ids), -1, -1);
+        }
+        throw new RuntimeException("Unknown expression type: " + expr.getClass());
+    }
+
+    private int expressions(List<Expression> exprs) {
+        IntList ids = new IntList();
+        for (Expression e : exprs) {
+            ids.add(expression(e));
+        }
+        return list(ids);
+    }
+
+    private int block(List<Statement> stmts) {
+        IntList ids = new IntList();
+        for (Statement s : stmts) {
+            statement(s, ids);
+        }
+        return list(ids);
+    }
+
+    private int node(byte k, int operator, int x, int y, int z) {
+        if (size == kind.length) {
+            int cap = size * 2;
+            kind = Arrays.copyOf(kind, cap);
+            op = Arrays.copyOf(op, cap);
+            a = Arrays.copyOf(a, cap);
+            b = Arrays.copyOf(b, cap);
+            c = Arrays.copyOf(c, cap);
+        }
+        kind[size] = k;
+        op[size] = (byte) operator;
+        a[size] = x;
+        b[size] = y;
+        c[size] = z;
+        return size++;
+    }
+
+    private int list(IntList ids) {
+        int need = listSize + ids.size + 1;
+        if (need > lists.length) {
+            lists = Arrays.copyOf(lists, Math.max(need, lists.length * 2));
+        }
+        int offset = listSize;
+        lists[listSize++] = ids.size;
+        System.arraycopy(ids.data, 0, lists, listSize, ids.size);
+        listSize += ids.size;
+        return offset;
+    }
+
+    private int number(double value) {
+        return numberIndex.computeIfAbsent(value, v -> {
+            numbers.add(v);
+            return numbers.size() - 1;
+        });
+    }
+
+    private int integer(long value) {
+        return integerIndex.computeIfAbsent(value, v -> {
+            integers.add(v);
+            return integers.size() - 1;
+        });
+    }
+
+    private int string(String value) {
+        return stringIndex.computeIfAbsent(value, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+
+    private int symbol(String name) {
+        return symbolIndex.computeIfAbsent(name, n -> {
+            symbols.add(n);
+            return symbols.size() - 1;
+        });
+    }
+
+    private static final class IntList {
+        int[] data = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int index) {
+            return data[index];
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.npl.ast;
+
+// компактное представление программы: узлы — индексы в параллельных массивах,
+// блоки — срезы массива lists (lists[off] = длина, далее индексы узлов)
+public final class FlatProgram {
+    // выражения
+    public static final byte NUMBER = 0;   // a = индекс в numbers
+    public static final byte STRING = 1;   // a = индекс в strings
+    public static final byte NONE = 2;
+    public static final byte VAR = 3;      // a = слот переменной
+    public static final byte BINARY = 4;   // op, a = левый, b = правый
+    public static final byte CALL = 5;     // a = место вызова, b = список аргументов
+    public static final byte INTEGER = 6;  // a = индекс в integers
+    public static final byte MAP = 7;      // a = список: ключ, значение, ключ, значение...
+    public static final byte INDEX = 8;    // a = словарь, b = ключ
+    // операторы
+    public static final byte PRINT = 10;   // a = список выражений, b = end
+    public static final byte ASSIGN = 11;  // a = слот, b = выражение
+    public static final byte COMPOUND = 12; // op, a = слот, b = выражение
+    public static final byte POSTFIX = 13; // op = OP_ADD | OP_SUB, a = слот
+    public static final byte IF = 14;      // a = условие, b = then, c = else или -1
+    public static final byte WHILE = 15;   // a = условие, b = тело
+    public static final byte FOR = 16;     // a = условие, b = тело, c = обновление (инициализация — предыдущий оператор)
+    public static final byte EXPR = 17;    // a = выражение
+    public static final byte INDEX_SET = 18; // op = OP_* или -1 для '=', a = словарь, b = ключ, c = значение
+    public static final byte FOR_IN = 19;  // a = слот, b = словарь, c = тело
+
+    public static final byte OP_ADD = 0, OP_SUB = 1, OP_MUL = 2, OP_DIV = 3,
+            OP_EQ = 4, OP_NEQ = 5, OP_LT = 6, OP_GT = 7, OP_LEQ = 8, OP_GEQ = 9,
+            OP_AND = 10, OP_OR = 11;
+
+    public final int size;
+    public final byte[] kind;
+    public final byte[] op;
+    public final int[] a;
+    public final int[] b;
+    public final int[] c;
+    public final int[] lists;
+    public final int body;
+
+    public final double[] numbers;
+    public final long[] integers;
+    public final String[] strings;
+    public final String[] symbols;
+    public final String[] callNames;
+
+    FlatProgram(int size, byte[] kind, byte[] op, int[] a, int[] b, int[] c, int[] lists, int body,
+                double[] numbers, long[] integers, String[] strings, String[] symbols, String[] callNames) {
+        this.size = size;
+        this.kind = kind;
+        this.op = op;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.lists = lists;
+        this.body = body;
+        this.numbers = numbers;
+        this.integers = integers;
+        this.strings = strings;
+        this.symbols = symbols;
+        this.callNames = callNames;
+    }
+
+    public static byte operatorCode(String op) {
+        switch (op) {
+            case "+":   return OP_ADD;
+            case "-":   return OP_SUB;
+            case "*":   return OP_MUL;
+            case "/":   return OP_DIV;
+            case "==":  return OP_EQ;
+            case "!=":  return OP_NEQ;
+            case "<":   return OP_LT;
+            case ">":   return OP_GT;
+            case "<=":  return OP_LEQ;
+            case ">=":  return OP_GEQ;
+            case "and": return OP_AND;
+            case "or":  return OP_OR;
+        }
+        throw new RuntimeException("Unknown operator: " + op);
+    }
+}
@@ -0,0 +1,16 @@
+package com.npl.ast;
+
+import java.util.List;
+
+// for (k in m) { ... } — обход ключей словаря в порядке вставки
+public class ForInStatement extends Statement {
+    public final String variable;
+    public final Expression iterable;
+    public final List<Statement> body;
+
+    public ForInStatement(String variable, Expression iterable, List<Statement> body) {
+        this.variable = variable;
+        this.iterable = iterable;
+        this.body = body;
+    }
+}
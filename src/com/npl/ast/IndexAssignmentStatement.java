@@ -0,0 +1,18 @@
+package com.npl.ast;
+
+// m[k] = v, m[k] += v и т.п.; m[k]++ разбирается как m[k] += 1
+public class IndexAssignmentStatement extends Statement {
+    public final Expression target;
+    public final Expression key;
+    public final String operator; // null для '=', иначе "+", "-", "*", "/"
+    public final Expression expression;
+    public final byte opCode; // FlatProgram.OP_* или -1 для '='
+
+    public IndexAssignmentStatement(Expression target, Expression key, String operator, Expression expression) {
+        this.target = target;
+        this.key = key;
+        this.operator = operator;
+        this.expression = expression;
+        this.opCode = operator == null ? -1 : FlatProgram.operatorCode(operator);
+    }
+}
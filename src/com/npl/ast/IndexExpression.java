@@ -0,0 +1,11 @@
+package com.npl.ast;
+
+public class IndexExpression extends Expression {
+    public final Expression target;
+    public final Expression key;
+
+    public IndexExpression(Expression target, Expression key) {
+        this.target = target;
+        this.key = key;
+    }
+}
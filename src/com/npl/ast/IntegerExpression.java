@@ -0,0 +1,8 @@
+package com.npl.ast;
+
+public class IntegerExpression extends Expression {
+    public final long value;
+    public IntegerExpression(long value) {
+        this.value = value;
+    }
+}
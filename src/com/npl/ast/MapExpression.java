@@ -0,0 +1,14 @@
+package com.npl.ast;
+
+import java.util.List;
+
+// литерал {k1: v1, k2: v2}
+public class MapExpression extends Expression {
+    public final List<Expression> keys;
+    public final List<Expression> values;
+
+    public MapExpression(List<Expression> keys, List<Expression> values) {
+        this.keys = keys;
+        this.values = values;
+    }
+}
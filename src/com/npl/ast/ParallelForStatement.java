@@ -0,0 +1,26 @@
+package com.npl.ast;
+
+import java.util.List;
+import java.util.Map;
+
+// parallel for (i = start; i < bound; i += step) reduce(sum s, max m) { ... }
+public class ParallelForStatement extends ForStatement {
+    public final String variable;
+    public final Expression start;
+    public final Expression bound;
+    public final boolean inclusive; // i <= bound
+    public final long step;
+    public final Map<String, String> reductions; // переменная -> "sum" | "min" | "max"
+
+    public ParallelForStatement(AssignmentStatement initialization, Expression condition, Statement update,
+                                List<Statement> body, Expression bound, boolean inclusive, long step,
+                                Map<String, String> reductions) {
+        super(initialization, condition, update, body);
+        this.variable = initialization.variable;
+        this.start = initialization.expression;
+        this.bound = bound;
+        this.inclusive = inclusive;
+        this.step = step;
+        this.reductions = reductions;
+    }
+}
@@ -6,6 +6,7 @@ import com.npl.lexer.TokenType;
 public class PostfixExpressionStatement extends Statement {
     private final String varName;
     private final TokenType op;
+    private ValueType targetType = ValueType.UNKNOWN;
 
     public PostfixExpressionStatement(String varName, TokenType op) {
         this.varName = varName;
@@ -20,6 +21,14 @@ public class PostfixExpressionStatement extends Statement {
         return op;
     }
 
+    public ValueType getTargetType() {
+        return targetType;
+    }
+
+    public void setTargetType(ValueType targetType) {
+        this.targetType = targetType;
+    }
+
     @Override
     public String toString() {
         return varName + (op == TokenType.INCREMENT ? "++" : "--");
@@ -0,0 +1,18 @@
+package com.npl.ast;
+
+public enum ValueType {
+    // NUMBER — double, INTEGER — long
+    NUMBER, INTEGER, STRING, NONE, MAP,
+    // переменная точно не определена
+    UNDEFINED,
+    // тип не удалось доказать
+    UNKNOWN;
+
+    public boolean isNumeric() {
+        return this == NUMBER || this == INTEGER;
+    }
+
+    public ValueType join(ValueType other) {
+        return this == other ? this : UNKNOWN;
+    }
+}
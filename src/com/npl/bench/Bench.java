@@ -0,0 +1,39 @@
+package com.npl.bench;
+
+import com.npl.analysis.TypeInference;
+import com.npl.ast.Program;
+import com.npl.interpreter.InterpreterEngine;
+import com.npl.lexer.Lexer;
+import com.npl.parser.Parser;
+
+// минимальный замер без JMH: прогрев, затем лучший из нескольких прогонов
+public final class Bench {
+    private Bench() { }
+
+    public static Program compile(String code) {
+        Program program = new Parser(new Lexer(code)).parseProgram();
+        TypeInference.analyze(program);
+        return program;
+    }
+
+    public static Runnable script(String code) {
+        Program program = compile(code);
+        return () -> new InterpreterEngine().interpret(program);
+    }
+
+    // наносекунд на одну операцию; ops — число операций за один вызов body
+    public static double measure(String name, Runnable body, long ops) {
+        for (int i = 0; i < 5; i++) {
+            body.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            body.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double perOp = (double) best / ops;
+        System.out.printf("%-40s %10.2f ns/op%n", name, perOp);
+        return perOp;
+    }
+}
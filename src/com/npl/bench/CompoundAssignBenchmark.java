@@ -0,0 +1,16 @@
+package com.npl.bench;
+
+public class CompoundAssignBenchmark {
+    private static final int N = 1_000_000;
+
+    public static void main(String[] args) {
+        Bench.measure("long form: s = s + i; i = i + 1",
+                Bench.script("s = 0; for (i = 0; i < " + N + "; i = i + 1) { s = s + i; }"), N);
+        Bench.measure("compound: s += i; i += 1",
+                Bench.script("s = 0; for (i = 0; i < " + N + "; i += 1) { s += i; }"), N);
+        Bench.measure("long form: k = k * 1.0000001",
+                Bench.script("k = 1; for (i = 0; i < " + N + "; i++) { k = k * 1.0000001; }"), N);
+        Bench.measure("compound: k *= 1.0000001",
+                Bench.script("k = 1; for (i = 0; i < " + N + "; i++) { k *= 1.0000001; }"), N);
+    }
+}
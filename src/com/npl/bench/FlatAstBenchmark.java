@@ -0,0 +1,86 @@
+package com.npl.bench;
+
+import com.npl.ast.FlatProgram;
+import com.npl.ast.Program;
+import com.npl.interpreter.FlatInterpreterEngine;
+import com.npl.lexer.Lexer;
+import com.npl.parser.Parser;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+
+// сравнение занимаемой памяти дерева объектов и FlatProgram на большом корпусе,
+// плюс скорость обоих интерпретаторов на одном цикле
+public class FlatAstBenchmark {
+    private static final int SCRIPTS = 5_000;
+    private static final int N = 1_000_000;
+
+    public static void main(String[] args) {
+        List<String> corpus = new ArrayList<>();
+        for (int i = 0; i < SCRIPTS; i++) {
+            corpus.add(script(i));
+        }
+
+        long base = usedHeap();
+        List<Program> trees = new ArrayList<>(SCRIPTS);
+        for (String code : corpus) {
+            trees.add(new Parser(new Lexer(code)).parseProgram());
+        }
+        long treeBytes = usedHeap() - base;
+
+        base = usedHeap();
+        List<FlatProgram> flats = new ArrayList<>(SCRIPTS);
+        for (String code : corpus) {
+            flats.add(new Parser(new Lexer(code)).parseFlatProgram());
+        }
+        long flatBytes = usedHeap() - base;
+
+        System.out.printf("%d scripts, %d chars%n", SCRIPTS, corpus.stream().mapToLong(String::length).sum());
+        System.out.printf("object tree: %,d bytes (%d per script)%n", treeBytes, treeBytes / SCRIPTS);
+        System.out.printf("flat:        %,d bytes (%d per script)%n", flatBytes, flatBytes / SCRIPTS);
+        System.out.printf("ratio:       %.2fx%n", (double) treeBytes / flatBytes);
+
+        String loop = "s = 0; for (i = 0; i < " + N + "; i++) { if (i > 10) { s = s + i * 0.5; } }";
+        Bench.measure("tree interpreter", Bench.script(loop), N);
+        FlatProgram flat = new Parser(new Lexer(loop)).parseFlatProgram();
+        Bench.measure("flat interpreter", () -> new FlatInterpreterEngine(flat).interpret(), N);
+
+        Reference.reachabilityFence(trees);
+        Reference.reachabilityFence(flats);
+    }
+
+    private static String script(int seed) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("total").append(seed % 7).append(" = 0;\n");
+        sb.append("name = 'script ").append(seed).append("';\n");
+        for (int j = 0; j < 8; j++) {
+            String v = "v" + ((seed + j) % 13);
+            sb.append(v).append(" = ").append(seed + j).append(" * 2 + 1;\n");
+            sb.append("if (").append(v).append(" > ").append(j * 3).append(" and ").append(v).append(" != 5) {\n");
+            sb.append("    ").append(v).append(" += 1;\n");
+            sb.append("} else {\n");
+            sb.append("    print(name, ").append(v).append(");\n");
+            sb.append("}\n");
+            sb.append("for (i = 0; i < ").append(j + 2).append("; i++) {\n");
+            sb.append("    total").append(seed % 7).append(" = total").append(seed % 7)
+                    .append(" + ").append(v).append(" / (i + 1);\n");
+            sb.append("}\n");
+        }
+        sb.append("print(total").append(seed % 7).append(");\n");
+        return sb.toString();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
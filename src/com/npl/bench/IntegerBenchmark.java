@@ -0,0 +1,26 @@
+package com.npl.bench;
+
+import com.npl.ast.FlatProgram;
+import com.npl.interpreter.FlatInterpreterEngine;
+import com.npl.lexer.Lexer;
+import com.npl.parser.Parser;
+
+// целочисленные циклы против тех же циклов на double (счётчик и сумма начинаются с 0.0)
+public class IntegerBenchmark {
+    private static final int N = 1_000_000;
+
+    public static void main(String[] args) {
+        run("sum, integer", "s = 0; for (i = 0; i < " + N + "; i++) { s += i; }");
+        run("sum, float", "s = 0.0; for (i = 0.0; i < " + N + "; i++) { s += i; }");
+        run("mix, integer", "s = 0; for (i = 0; i < " + N + "; i++) { s = s + i * 3 - (i - 1) * 2; }");
+        run("mix, float", "s = 0.0; for (i = 0.0; i < " + N + "; i++) { s = s + i * 3.0 - (i - 1.0) * 2.0; }");
+        run("branch, integer", "c = 0; for (i = 0; i < " + N + "; i++) { if (i - i / 2 * 2 == 0) { c++; } }");
+        run("branch, float", "c = 0.0; for (i = 0.0; i < " + N + "; i++) { if (i - i / 2.0 * 2.0 == 0.0) { c++; } }");
+    }
+
+    private static void run(String name, String code) {
+        Bench.measure("tree " + name, Bench.script(code), N);
+        FlatProgram flat = new Parser(new Lexer(code)).parseFlatProgram();
+        Bench.measure("flat " + name, () -> new FlatInterpreterEngine(flat).interpret(), N);
+    }
+}
@@ -0,0 +1,136 @@
+package com.npl.bench;
+
+import com.npl.ast.FlatProgram;
+import com.npl.interpreter.FlatInterpreterEngine;
+import com.npl.interpreter.NPLMap;
+import com.npl.lexer.Lexer;
+import com.npl.parser.Parser;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// NPLMap против java.util.HashMap на 1M ключей: вставка в пустую таблицу и поиск.
+// Числовые ключи хранятся примитивами, как их видит интерпретатор, поэтому HashMap
+// платит за упаковку на каждом обращении
+public class MapBenchmark {
+    private static final int N = 1_000_000;
+    private static final int SCRIPT_N = 200_000;
+    private static final Object VALUE = 1L;
+    private static long sink;
+
+    public static void main(String[] args) {
+        long[] longs = new long[N];
+        double[] doubles = new double[N];
+        String[] strings = new String[N];
+        for (int i = 0; i < N; i++) {
+            longs[i] = i * 0x5DEECE66DL;
+            doubles[i] = i + 0.5;
+            strings[i] = "key" + i;
+        }
+        // случайный порядок: у последовательных ключей соседние хэши HashMap попадают
+        // в соседние корзины, и замер мерил бы кэш, а не таблицу
+        Random random = new Random(42);
+        for (int i = N - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long l = longs[i]; longs[i] = longs[j]; longs[j] = l;
+            double d = doubles[i]; doubles[i] = doubles[j]; doubles[j] = d;
+            String s = strings[i]; strings[i] = strings[j]; strings[j] = s;
+        }
+
+        Bench.measure("HashMap<Long> insert", () -> {
+            Map<Long, Object> m = new HashMap<>();
+            for (long k : longs) m.put(k, VALUE);
+            sink += m.size();
+        }, N);
+        Bench.measure("NPLMap long insert", () -> {
+            NPLMap m = new NPLMap();
+            for (long k : longs) m.put(k, VALUE);
+            sink += m.size();
+        }, N);
+        Map<Long, Object> longHash = new HashMap<>();
+        NPLMap longMap = new NPLMap();
+        for (long k : longs) {
+            longHash.put(k, VALUE);
+            longMap.put(k, VALUE);
+        }
+        Bench.measure("HashMap<Long> lookup", () -> {
+            long s = 0;
+            for (long k : longs) s += (Long) longHash.get(k);
+            sink += s;
+        }, N);
+        Bench.measure("NPLMap long lookup", () -> {
+            long s = 0;
+            for (long k : longs) s += (Long) longMap.get(k);
+            sink += s;
+        }, N);
+
+        Bench.measure("HashMap<Double> insert", () -> {
+            Map<Double, Object> m = new HashMap<>();
+            for (double k : doubles) m.put(k, VALUE);
+            sink += m.size();
+        }, N);
+        Bench.measure("NPLMap double insert", () -> {
+            NPLMap m = new NPLMap();
+            for (double k : doubles) m.put(k, VALUE);
+            sink += m.size();
+        }, N);
+        Map<Double, Object> doubleHash = new HashMap<>();
+        NPLMap doubleMap = new NPLMap();
+        for (double k : doubles) {
+            doubleHash.put(k, VALUE);
+            doubleMap.put(k, VALUE);
+        }
+        Bench.measure("HashMap<Double> lookup", () -> {
+            long s = 0;
+            for (double k : doubles) s += (Long) doubleHash.get(k);
+            sink += s;
+        }, N);
+        Bench.measure("NPLMap double lookup", () -> {
+            long s = 0;
+            for (double k : doubles) s += (Long) doubleMap.get(k);
+            sink += s;
+        }, N);
+
+        Bench.measure("HashMap<String> insert", () -> {
+            Map<String, Object> m = new HashMap<>();
+            for (String k : strings) m.put(k, VALUE);
+            sink += m.size();
+        }, N);
+        Bench.measure("NPLMap string insert", () -> {
+            NPLMap m = new NPLMap();
+            for (String k : strings) m.put(k, VALUE);
+            sink += m.size();
+        }, N);
+        Map<String, Object> stringHash = new HashMap<>();
+        NPLMap stringMap = new NPLMap();
+        for (String k : strings) {
+            stringHash.put(k, VALUE);
+            stringMap.put(k, VALUE);
+        }
+        Bench.measure("HashMap<String> lookup", () -> {
+            long s = 0;
+            for (String k : strings) s += (Long) stringHash.get(k);
+            sink += s;
+        }, N);
+        Bench.measure("NPLMap string lookup", () -> {
+            long s = 0;
+            for (String k : strings) s += (Long) stringMap.get(k);
+            sink += s;
+        }, N);
+
+        // то же из скрипта: словарь против цепочки if по переменным
+        String fill = "m = {}; for (i = 0; i < 8; i++) { m[i] = i * 10; } ";
+        String lookup = fill + "s = 0; for (i = 0; i < " + SCRIPT_N + "; i++) { s += m[i - floor(i / 8) * 8]; }";
+        String chain = "s = 0; for (i = 0; i < " + SCRIPT_N + "; i++) { k = i - floor(i / 8) * 8; "
+                + "if (k == 0) { s += 0; } else { if (k == 1) { s += 10; } else { if (k == 2) { s += 20; } "
+                + "else { if (k == 3) { s += 30; } else { if (k == 4) { s += 40; } else { if (k == 5) { s += 50; } "
+                + "else { if (k == 6) { s += 60; } else { s += 70; } } } } } } } }";
+        Bench.measure("script tree: m[k]", Bench.script(lookup), SCRIPT_N);
+        Bench.measure("script tree: if chain", Bench.script(chain), SCRIPT_N);
+        FlatProgram flatLookup = new Parser(new Lexer(lookup)).parseFlatProgram();
+        FlatProgram flatChain = new Parser(new Lexer(chain)).parseFlatProgram();
+        Bench.measure("script flat: m[k]", () -> new FlatInterpreterEngine(flatLookup).interpret(), SCRIPT_N);
+        Bench.measure("script flat: if chain", () -> new FlatInterpreterEngine(flatChain).interpret(), SCRIPT_N);
+    }
+}
@@ -0,0 +1,42 @@
+package com.npl.bench;
+
+import com.npl.interop.NativeFunction;
+import com.npl.interop.NativeRegistry;
+
+import java.util.function.DoubleUnaryOperator;
+
+public class NativeCallBenchmark {
+    private static final int N = 10_000_000;
+    private static final int SCRIPT_N = 1_000_000;
+    private static double sink;
+
+    public static void main(String[] args) {
+        NativeFunction sqrt = NativeRegistry.global().lookup("sqrt");
+        DoubleUnaryOperator bound = sqrt.unary();
+        Object[] boxed = new Object[1];
+
+        Bench.measure("direct Math.sqrt", () -> {
+            double s = 0;
+            for (int i = 0; i < N; i++) s += Math.sqrt(i);
+            sink = s;
+        }, N);
+        Bench.measure("bound DoubleUnaryOperator", () -> {
+            double s = 0;
+            for (int i = 0; i < N; i++) s += bound.applyAsDouble(i);
+            sink = s;
+        }, N);
+        Bench.measure("generic (Object[])Object handle", () -> {
+            double s = 0;
+            for (int i = 0; i < N; i++) {
+                boxed[0] = (double) i;
+                s += (Double) sqrt.invoke(boxed);
+            }
+            sink = s;
+        }, N);
+
+        Bench.measure("script: s += i * 0.5",
+                Bench.script("s = 0; for (i = 0; i < " + SCRIPT_N + "; i++) { s += i * 0.5; }"), SCRIPT_N);
+        Bench.measure("script: s += sqrt(i)",
+                Bench.script("s = 0; for (i = 0; i < " + SCRIPT_N + "; i++) { s += sqrt(i); }"), SCRIPT_N);
+    }
+}
@@ -0,0 +1,96 @@
+package com.npl.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// время от запуска JVM до первого байта вывода для тривиальных скриптов:
+// без CDS, со штатным архивом JDK и с архивом приложения из ./build.sh.
+//   java -cp bin/classes com.npl.bench.StartupBenchmark [npl.jar [npl.jsa]]
+public class StartupBenchmark {
+    private static final int RUNS = 15;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String jar = args.length > 0 ? args[0] : "bin/npl.jar";
+        String archive = args.length > 1 ? args[1] : "bin/npl.jsa";
+        if (!new File(jar).isFile()) {
+            throw new RuntimeException("No " + jar + ", run ./build.sh first");
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        Path hello = script("print(\"hello\");");
+        Path loop = script("s = 0; for (i = 0; i < 100; i++) { s += i; } m = {\"s\": s}; print(m[\"s\"], \" \", sqrt(2.0));");
+
+        List<String[]> configs = new ArrayList<>();
+        configs.add(new String[] {"no CDS", "-Xshare:off"});
+        configs.add(new String[] {"JDK CDS", "-Xshare:auto"});
+        if (new File(archive).isFile()) {
+            configs.add(new String[] {"AppCDS", "-XX:SharedArchiveFile=" + archive});
+            configs.add(new String[] {"AppCDS + C1", "-XX:SharedArchiveFile=" + archive, "-XX:TieredStopAtLevel=1"});
+        } else {
+            System.out.println("(no " + archive + ", AppCDS skipped)");
+        }
+
+        for (String[] config : configs) {
+            String[] options = Arrays.copyOfRange(config, 1, config.length);
+            run(config[0] + ", hello", java, options, jar, hello);
+            run(config[0] + ", loop + map", java, options, jar, loop);
+        }
+        Files.delete(hello);
+        Files.delete(loop);
+    }
+
+    private static Path script(String code) throws IOException {
+        Path file = Files.createTempFile("npl-startup", ".npl");
+        Files.write(file, code.getBytes(StandardCharsets.UTF_8));
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    private static void run(String name, String java, String[] options, String jar, Path script)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(Arrays.asList(options));
+        command.add("-jar");
+        command.add(jar);
+        command.add(script.toString());
+
+        // первый прогон прогревает файловый кэш и не учитывается
+        firstOutput(command);
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            times[i] = firstOutput(command);
+        }
+        Arrays.sort(times);
+        System.out.printf("%-40s min %6.1f ms   median %6.1f ms%n",
+                name, times[0] / 1e6, times[RUNS / 2] / 1e6);
+    }
+
+    // наносекунд от старта процесса до первого байта stdout
+    private static long firstOutput(List<String> command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+        long start = System.nanoTime();
+        Process process = builder.start();
+        long elapsed;
+        try (InputStream out = process.getInputStream()) {
+            if (out.read() < 0) {
+                throw new RuntimeException("No output from " + String.join(" ", command));
+            }
+            elapsed = System.nanoTime() - start;
+            out.transferTo(OutputStream.nullOutputStream());
+        }
+        if (process.waitFor() != 0) {
+            throw new RuntimeException("Exit code " + process.exitValue() + " from " + String.join(" ", command));
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,46 @@
+package com.npl.interop;
+
+import com.npl.interpreter.NPLMap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+final class Builtins {
+    private Builtins() { }
+
+    static void registerAll(NativeRegistry registry) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType unary = MethodType.methodType(double.class, double.class);
+        registry.registerBuiltin("sqrt", lookup, Math.class, "sqrt", unary);
+        registry.registerBuiltin("floor", lookup, Math.class, "floor", unary);
+        registry.registerBuiltin("abs", lookup, Math.class, "abs", unary);
+        registry.registerBuiltin("len", lookup, Builtins.class, "len", MethodType.methodType(long.class, Object.class));
+        registry.registerBuiltin("str", lookup, Builtins.class, "str", MethodType.methodType(String.class, Object.class));
+        registry.registerBuiltin("has", lookup, Builtins.class, "has",
+                MethodType.methodType(long.class, NPLMap.class, Object.class));
+        registry.registerBuiltin("remove", lookup, Builtins.class, "remove",
+                MethodType.methodType(Object.class, NPLMap.class, Object.class), 0);
+    }
+
+    static long len(Object value) {
+        if (value instanceof String) {
+            return ((String) value).length();
+        } else if (value instanceof NPLMap) {
+            return ((NPLMap) value).size();
+        }
+        throw new RuntimeException("len() expects a string or a map");
+    }
+
+    static long has(NPLMap map, Object key) {
+        return map.containsKey(key) ? 1 : 0;
+    }
+
+    // удалённое значение или none
+    static Object remove(NPLMap map, Object key) {
+        return map.remove(key);
+    }
+
+    static String str(Object value) {
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,205 @@
+package com.npl.interop;
+
+import com.npl.ast.ValueType;
+import com.npl.interpreter.NPLMap;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+// функция хоста; сигнатура разбирается при регистрации, а связывается один раз при первом вызове
+public final class NativeFunction {
+    private static final MethodType UNARY = MethodType.methodType(double.class, double.class);
+    private static final MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+
+    public final String name;
+    public final int arity;
+    public final ValueType resultType;
+    private final Class<?>[] parameterTypes;
+    private final MethodHandle handle;
+    private final MethodHandles.Lookup lookup;
+    private final MethodType type;
+    // какие аргументы функция может изменить; null — неизвестно (функция хоста)
+    private final boolean[] written;
+
+    // заполняются в link()
+    private volatile boolean linked;
+    // (Object[])Object: общий путь для любых сигнатур
+    private MethodHandle generic;
+    // примитивные пути без упаковки, если сигнатура сводится к double -> double
+    private DoubleUnaryOperator unary;
+    private DoubleBinaryOperator binary;
+
+    NativeFunction(String name, MethodHandle handle, MethodHandles.Lookup lookup, boolean[] written) {
+        if (handle.isVarargsCollector()) {
+            handle = handle.asFixedArity();
+        }
+        this.name = name;
+        this.handle = handle;
+        this.lookup = lookup;
+        this.type = normalize(handle.type());
+        this.arity = type.parameterCount();
+        this.parameterTypes = type.parameterArray();
+        this.resultType = valueTypeOf(type.returnType());
+        this.written = written;
+    }
+
+    // адаптеры хэндлов и LambdaMetafactory порождают классы; при регистрации встроенных
+    // функций это заметная часть старта, поэтому связывание отложено до первого вызова
+    private synchronized void link() {
+        if (linked) {
+            return;
+        }
+        MethodHandle normalized = MethodHandles.explicitCastArguments(handle, type);
+        generic = normalized.asType(type.generic()).asSpreader(Object[].class, arity);
+        if (type.equals(UNARY)) {
+            unary = spin(lookup, handle, normalized, DoubleUnaryOperator.class, "applyAsDouble", UNARY);
+        } else if (type.equals(BINARY)) {
+            binary = spin(lookup, handle, normalized, DoubleBinaryOperator.class, "applyAsDouble", BINARY);
+        }
+        linked = true;
+    }
+
+    // числовые примитивы приводятся к двум видам чисел NPL: целые к long, дробные к double
+    private static MethodType normalize(MethodType type) {
+        MethodType result = type;
+        for (int i = 0; i < type.parameterCount(); i++) {
+            Class<?> p = numericKind(type.parameterType(i));
+            if (p != null) {
+                result = result.changeParameterType(i, p);
+            }
+        }
+        Class<?> r = numericKind(type.returnType());
+        if (r != null) {
+            result = result.changeReturnType(r);
+        }
+        return result;
+    }
+
+    private static Class<?> numericKind(Class<?> type) {
+        if (type == double.class || type == float.class) return double.class;
+        if (type == long.class || type == int.class || type == short.class
+                || type == byte.class || type == char.class) return long.class;
+        return null;
+    }
+
+    private static ValueType valueTypeOf(Class<?> type) {
+        if (type == double.class) return ValueType.NUMBER;
+        if (type == long.class) return ValueType.INTEGER;
+        if (type == String.class) return ValueType.STRING;
+        if (type == NPLMap.class) return ValueType.MAP;
+        if (type == void.class) return ValueType.NONE;
+        return ValueType.UNKNOWN;
+    }
+
+    // прямой хэндл превращается в реализацию интерфейса через LambdaMetafactory,
+    // и JIT видит обычный интерфейсный вызов; иначе — замыкание над invokeExact
+    @SuppressWarnings("unchecked")
+    private static <T> T spin(MethodHandles.Lookup lookup, MethodHandle direct, MethodHandle normalized,
+                              Class<T> iface, String method, MethodType type) {
+        if (lookup != null && direct.type().equals(type)) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(lookup, method,
+                        MethodType.methodType(iface), type, direct, type);
+                return (T) site.getTarget().invoke();
+            } catch (LambdaConversionException | IllegalArgumentException e) {
+                // не прямой хэндл или нет доступа — ниже
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to link native function: " + e.getMessage(), e);
+            }
+        }
+        if (iface == DoubleUnaryOperator.class) {
+            return (T) (DoubleUnaryOperator) x -> {
+                try {
+                    return (double) normalized.invokeExact(x);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        }
+        return (T) (DoubleBinaryOperator) (x, y) -> {
+            try {
+                return (double) normalized.invokeExact(x, y);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    public boolean isNumericParameter(int index) {
+        return parameterTypes[index] == double.class || parameterTypes[index] == long.class;
+    }
+
+    // изменить словарь функция может только через параметр, способный его принять
+    public boolean mayWriteParameter(int index) {
+        return canHoldMap(parameterTypes[index]) && (written == null || written[index]);
+    }
+
+    public boolean mayReturnMap() {
+        return canHoldMap(type.returnType());
+    }
+
+    private static boolean canHoldMap(Class<?> type) {
+        return type.isAssignableFrom(NPLMap.class);
+    }
+
+    public ValueType parameterType(int index) {
+        return valueTypeOf(parameterTypes[index]);
+    }
+
+    public DoubleUnaryOperator unary() {
+        if (!linked) link();
+        return unary;
+    }
+
+    public DoubleBinaryOperator binary() {
+        if (!linked) link();
+        return binary;
+    }
+
+    public Object invoke(Object[] args) {
+        if (args.length != arity) {
+            throw new RuntimeException("Function " + name + " expects " + arity + " argument(s) but got " + args.length);
+        }
+        for (int i = 0; i < args.length; i++) {
+            args[i] = coerce(i, args[i]);
+        }
+        if (!linked) {
+            link();
+        }
+        try {
+            return (Object) generic.invokeExact(args);
+        } catch (ClassCastException | WrongMethodTypeException | NullPointerException e) {
+            throw new RuntimeException("Bad arguments for " + name + ": " + e.getMessage());
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Function " + name + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private Object coerce(int index, Object arg) {
+        Class<?> type = parameterTypes[index];
+        if (type == double.class && arg instanceof Long) {
+            return (double) (Long) arg;
+        }
+        if (type == long.class && arg instanceof Double) {
+            double d = (Double) arg;
+            if (d != Math.rint(d) || Math.abs(d) > 0x1p63) {
+                throw new RuntimeException("Argument " + (index + 1) + " of " + name + " must be an integer");
+            }
+            return (long) d;
+        }
+        return arg;
+    }
+}
@@ -0,0 +1,75 @@
+package com.npl.interop;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class NativeRegistry {
+    private static final NativeRegistry GLOBAL = withBuiltins();
+
+    private final Map<String, NativeFunction> functions = new ConcurrentHashMap<>();
+
+    public static NativeRegistry global() {
+        return GLOBAL;
+    }
+
+    public static NativeRegistry withBuiltins() {
+        NativeRegistry registry = new NativeRegistry();
+        Builtins.registerAll(registry);
+        return registry;
+    }
+
+    public NativeFunction lookup(String name) {
+        return functions.get(name);
+    }
+
+    // lookup нужен, чтобы связать хэндл с классом хоста без рефлексии на каждом вызове;
+    // для публичных методов подойдёт и MethodHandles.publicLookup()
+    public void register(String name, MethodHandles.Lookup lookup, Class<?> owner, String method, MethodType type) {
+        register(name, findStatic(name, lookup, owner, method, type), lookup, null);
+    }
+
+    // встроенные функции перечисляют аргументы, которые меняют; остальные только читаются
+    void registerBuiltin(String name, MethodHandles.Lookup lookup, Class<?> owner, String method, MethodType type,
+                         int... writtenParameters) {
+        boolean[] written = new boolean[type.parameterCount()];
+        for (int index : writtenParameters) {
+            written[index] = true;
+        }
+        register(name, findStatic(name, lookup, owner, method, type), lookup, written);
+    }
+
+    private static MethodHandle findStatic(String name, MethodHandles.Lookup lookup, Class<?> owner, String method,
+                                           MethodType type) {
+        try {
+            return lookup.findStatic(owner, method, type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException("Cannot register native function " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void register(String name, Method method) {
+        if (!Modifier.isStatic(method.getModifiers())) {
+            throw new RuntimeException("Native function must be static: " + method);
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            register(name, lookup.unreflect(method), lookup, null);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Cannot register native function " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    // уже связанный хэндл, например bindTo(service) для метода экземпляра
+    public void register(String name, MethodHandle handle) {
+        register(name, handle, null, null);
+    }
+
+    private void register(String name, MethodHandle handle, MethodHandles.Lookup lookup, boolean[] written) {
+        functions.put(name, new NativeFunction(name, handle, lookup, written));
+    }
+}
@@ -0,0 +1,114 @@
+package com.npl.interpreter;
+
+import static com.npl.ast.FlatProgram.*;
+
+// общая числовая семантика для обоих интерпретаторов:
+// long op long остаётся long (с проверкой переполнения), кроме '/',
+// при участии double результат double, сравнения и and/or дают 1 или 0 (long)
+final class Arithmetic {
+    private static final String[] SYMBOLS = {"+", "-", "*", "/", "==", "!=", "<", ">", "<=", ">=", "and", "or"};
+
+    private Arithmetic() { }
+
+    static boolean isLogical(byte op) {
+        return op >= OP_EQ;
+    }
+
+    static long applyLong(byte op, long l, long r) {
+        try {
+            switch (op) {
+                case OP_ADD: return Math.addExact(l, r);
+                case OP_SUB: return Math.subtractExact(l, r);
+                case OP_MUL: return Math.multiplyExact(l, r);
+                case OP_EQ:  return (l == r) ? 1 : 0;
+                case OP_NEQ: return (l != r) ? 1 : 0;
+                case OP_LT:  return (l < r)  ? 1 : 0;
+                case OP_GT:  return (l > r)  ? 1 : 0;
+                case OP_LEQ: return (l <= r) ? 1 : 0;
+                case OP_GEQ: return (l >= r) ? 1 : 0;
+                case OP_AND: return (l != 0 && r != 0) ? 1 : 0;
+                case OP_OR:  return (l != 0 || r != 0) ? 1 : 0;
+            }
+        } catch (ArithmeticException e) {
+            throw new RuntimeException("Integer overflow: " + l + " " + symbol(op) + " " + r);
+        }
+        throw new RuntimeException("Operator " + symbol(op) + " does not produce an integer");
+    }
+
+    static double applyDouble(byte op, double l, double r) {
+        switch (op) {
+            case OP_ADD: return l + r;
+            case OP_SUB: return l - r;
+            case OP_MUL: return l * r;
+            case OP_DIV: return l / r;
+        }
+        throw new RuntimeException("Operator " + symbol(op) + " does not produce a float");
+    }
+
+    static long compareDouble(byte op, double l, double r) {
+        switch (op) {
+            case OP_EQ:  return (l == r) ? 1 : 0;
+            case OP_NEQ: return (l != r) ? 1 : 0;
+            case OP_LT:  return (l < r)  ? 1 : 0;
+            case OP_GT:  return (l > r)  ? 1 : 0;
+            case OP_LEQ: return (l <= r) ? 1 : 0;
+            case OP_GEQ: return (l >= r) ? 1 : 0;
+            case OP_AND: return (l != 0.0 && r != 0.0) ? 1 : 0;
+            case OP_OR:  return (l != 0.0 || r != 0.0) ? 1 : 0;
+        }
+        throw new RuntimeException("Unknown operator: " + symbol(op));
+    }
+
+    // null, если операнды не числа
+    static Object apply(byte op, Object l, Object r) {
+        if (l instanceof Long && r instanceof Long) {
+            long a = (Long) l;
+            long b = (Long) r;
+            return op == OP_DIV ? (Object) ((double) a / (double) b) : (Object) applyLong(op, a, b);
+        }
+        if ((l instanceof Long || l instanceof Double) && (r instanceof Long || r instanceof Double)) {
+            double a = ((Number) l).doubleValue();
+            double b = ((Number) r).doubleValue();
+            return isLogical(op) ? (Object) compareDouble(op, a, b) : (Object) applyDouble(op, a, b);
+        }
+        return null;
+    }
+
+    static boolean isNumber(Object value) {
+        return value instanceof Long || value instanceof Double;
+    }
+
+    static Object increment(Object value, long delta) {
+        if (value instanceof Long) {
+            return increment((long) (Long) value, delta);
+        }
+        return (Double) value + delta;
+    }
+
+    static long increment(long value, long delta) {
+        try {
+            return Math.addExact(value, delta);
+        } catch (ArithmeticException e) {
+            throw new RuntimeException("Integer overflow: " + value + (delta > 0 ? "++" : "--"));
+        }
+    }
+
+    static boolean isTruthy(Object value) {
+        if (value instanceof Long) {
+            return (Long) value != 0;
+        } else if (value instanceof Double) {
+            return (Double) value != 0.0;
+        } else if (value instanceof String) {
+            return !((String) value).isEmpty();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof NPLMap) {
+            return ((NPLMap) value).size() > 0;
+        }
+        return value != null;
+    }
+
+    static String symbol(byte op) {
+        return op >= 0 && op < SYMBOLS.length ? SYMBOLS[op] : "#" + op;
+    }
+}
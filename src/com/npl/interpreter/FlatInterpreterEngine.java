@@ -0,0 +1,410 @@
+package com.npl.interpreter;
+
+import com.npl.ast.FlatProgram;
+import com.npl.interop.NativeFunction;
+import com.npl.interop.NativeRegistry;
+
+import static com.npl.ast.FlatProgram.*;
+
+// обходит FlatProgram; переменные лежат в слотах по индексу символа,
+// числа хранятся в double[]/long[] без упаковки. Результат вычисления выражения
+// кладётся в «регистры» (tag, dv, iv, rv), поэтому промежуточные значения тоже не упаковываются
+public class FlatInterpreterEngine {
+    private static final byte UNDEFINED = 0;
+    private static final byte NUM = 1;
+    private static final byte INT = 2;
+    private static final byte REF = 3; // строка, словарь или none
+
+    private final FlatProgram p;
+    private final NativeRegistry natives;
+    private final byte[] tags;
+    private final double[] nums;
+    private final long[] ints;
+    private final Object[] refs;
+    private final NativeFunction[] linked;
+    private final StringBuilder output = new StringBuilder();
+    private long statementsExecuted;
+
+    private byte tag;
+    private double dv;
+    private long iv;
+    private Object rv;
+
+    public FlatInterpreterEngine(FlatProgram program) {
+        this(program, NativeRegistry.global());
+    }
+
+    public FlatInterpreterEngine(FlatProgram program, NativeRegistry natives) {
+        this.p = program;
+        this.natives = natives;
+        this.tags = new byte[program.symbols.length];
+        this.nums = new double[program.symbols.length];
+        this.ints = new long[program.symbols.length];
+        this.refs = new Object[program.symbols.length];
+        this.linked = new NativeFunction[program.callNames.length];
+    }
+
+    public void interpret() {
+        executeList(p.body);
+    }
+
+    public String getOutput() {
+        return output.toString();
+    }
+
+    public long getStatementsExecuted() {
+        return statementsExecuted;
+    }
+
+    private void executeList(int offset) {
+        int[] lists = p.lists;
+        int end = offset + 1 + lists[offset];
+        for (int i = offset + 1; i < end; i++) {
+            execute(lists[i]);
+        }
+    }
+
+    private void execute(int node) {
+        statementsExecuted++;
+        switch (p.kind[node]) {
+            case PRINT: {
+                int list = p.a[node];
+                int end = list + 1 + p.lists[list];
+                for (int i = list + 1; i < end; i++) {
+                    append(p.lists[i]);
+                }
+                append(p.b[node]);
+                break;
+            }
+            case ASSIGN: {
+                int slot = p.a[node];
+                eval(p.b[node]);
+                tags[slot] = tag;
+                nums[slot] = dv;
+                ints[slot] = iv;
+                // после числа rv устаревший: слот не должен держать прежнюю строку или словарь
+                refs[slot] = tag == REF ? rv : null;
+                break;
+            }
+            case COMPOUND:
+                compound(node);
+                break;
+            case POSTFIX: {
+                int slot = p.a[node];
+                long delta = p.op[node] == OP_ADD ? 1 : -1;
+                if (tags[slot] == INT) {
+                    ints[slot] = Arithmetic.increment(ints[slot], delta);
+                } else if (tags[slot] == NUM) {
+                    nums[slot] += delta;
+                } else {
+                    throw new RuntimeException(isUndefined(slot)
+                            ? "Undefined variable: " + p.symbols[slot]
+                            : "Only numbers can be incremented/decremented.");
+                }
+                break;
+            }
+            case IF:
+                if (truthy(p.a[node])) {
+                    executeList(p.b[node]);
+                } else if (p.c[node] >= 0) {
+                    executeList(p.c[node]);
+                }
+                break;
+            case WHILE:
+                while (truthy(p.a[node])) {
+                    executeList(p.b[node]);
+                }
+                break;
+            case FOR:
+                while (truthy(p.a[node])) {
+                    executeList(p.b[node]);
+                    execute(p.c[node]);
+                }
+                break;
+            case EXPR:
+                eval(p.a[node]);
+                break;
+            case INDEX_SET:
+                indexSet(node);
+                break;
+            case FOR_IN: {
+                int slot = p.a[node];
+                NPLMap map = evalMap(p.b[node], "Only maps can be iterated.");
+                int mods = map.modCount();
+                for (int e = map.next(0); e >= 0; e = map.next(e + 1)) {
+                    switch (map.keyKind(e)) {
+                        case NPLMap.LONG_KEY:   tags[slot] = INT; ints[slot] = map.longKey(e); refs[slot] = null; break;
+                        case NPLMap.DOUBLE_KEY: tags[slot] = NUM; nums[slot] = map.doubleKey(e); refs[slot] = null; break;
+                        default:                tags[slot] = REF; refs[slot] = map.stringKey(e);
+                    }
+                    executeList(p.c[node]);
+                    if (map.modCount() != mods) {
+                        throw new RuntimeException("Map changed size during iteration.");
+                    }
+                }
+                break;
+            }
+            default:
+                throw new RuntimeException("Unknown statement kind: " + p.kind[node]);
+        }
+    }
+
+    private void compound(int node) {
+        byte op = p.op[node];
+        int slot = p.a[node];
+        eval(p.b[node]);
+        if (tag != NUM && tag != INT) {
+            throw new RuntimeException("Only numbers support compound assignment.");
+        }
+        if (tags[slot] == INT) {
+            if (tag == INT && op != OP_DIV) {
+                ints[slot] = Arithmetic.applyLong(op, ints[slot], iv);
+            } else {
+                nums[slot] = Arithmetic.applyDouble(op, ints[slot], tag == INT ? iv : dv);
+                tags[slot] = NUM;
+            }
+        } else if (tags[slot] == NUM) {
+            nums[slot] = Arithmetic.applyDouble(op, nums[slot], tag == INT ? iv : dv);
+        } else {
+            throw new RuntimeException(isUndefined(slot)
+                    ? "Undefined variable: " + p.symbols[slot]
+                    : "Only numbers support compound assignment.");
+        }
+    }
+
+    private void indexSet(int node) {
+        NPLMap map = evalMap(p.a[node], "Only maps support item assignment.");
+        eval(p.b[node]);
+        byte kt = tag;
+        double kd = dv;
+        long ki = iv;
+        Object kr = rv;
+        eval(p.c[node]);
+        byte op = p.op[node];
+        if (op < 0) {
+            put(map, kt, kd, ki, kr, boxed());
+            return;
+        }
+        Object operand = boxed();
+        tag = kt;
+        dv = kd;
+        iv = ki;
+        rv = kr;
+        int entry = requireKey(map);
+        Object result = Arithmetic.apply(op, map.valueAt(entry), operand);
+        if (result == null) {
+            throw new RuntimeException("Only numbers support compound assignment.");
+        }
+        map.setValueAt(entry, result);
+    }
+
+    private NPLMap evalMap(int expr, String message) {
+        eval(expr);
+        if (tag != REF || !(rv instanceof NPLMap)) {
+            throw new RuntimeException(message);
+        }
+        return (NPLMap) rv;
+    }
+
+    // ключ берётся из регистров, числа не упаковываются
+    private int requireKey(NPLMap map) {
+        int entry;
+        switch (tag) {
+            case NUM: entry = map.find(dv); break;
+            case INT: entry = map.find(iv); break;
+            default:  entry = map.find(rv);
+        }
+        // упаковка только ради сообщения об ошибке
+        return entry >= 0 ? entry : map.require(boxed());
+    }
+
+    private static void put(NPLMap map, byte kt, double kd, long ki, Object kr, Object value) {
+        switch (kt) {
+            case NUM: map.put(kd, value); break;
+            case INT: map.put(ki, value); break;
+            default:  map.put(kr, value);
+        }
+    }
+
+    // none хранится как REF с null и, как и в InterpreterEngine, не считается числом
+    private boolean isUndefined(int slot) {
+        return tags[slot] == UNDEFINED || (tags[slot] == REF && refs[slot] == null);
+    }
+
+    private void append(int expr) {
+        eval(expr);
+        switch (tag) {
+            case NUM: output.append(dv); break;
+            case INT: output.append(iv); break;
+            default:  output.append(rv);
+        }
+    }
+
+    private boolean truthy(int expr) {
+        eval(expr);
+        switch (tag) {
+            case NUM: return dv != 0.0;
+            case INT: return iv != 0;
+            default:  return Arithmetic.isTruthy(rv);
+        }
+    }
+
+    private void eval(int expr) {
+        switch (p.kind[expr]) {
+            case NUMBER:
+                setDouble(p.numbers[p.a[expr]]);
+                return;
+            case INTEGER:
+                setLong(p.integers[p.a[expr]]);
+                return;
+            case STRING:
+                setRef(p.strings[p.a[expr]]);
+                return;
+            case NONE:
+                setRef(null);
+                return;
+            case VAR: {
+                int slot = p.a[expr];
+                if (tags[slot] == UNDEFINED) {
+                    throw new RuntimeException("Undefined variable: " + p.symbols[slot]);
+                }
+                tag = tags[slot];
+                dv = nums[slot];
+                iv = ints[slot];
+                rv = refs[slot];
+                return;
+            }
+            case BINARY:
+                binary(expr);
+                return;
+            case CALL:
+                call(expr);
+                return;
+            case INDEX: {
+                NPLMap map = evalMap(p.a[expr], "Only maps can be indexed.");
+                eval(p.b[expr]);
+                setValue(map.valueAt(requireKey(map)));
+                return;
+            }
+            case MAP: {
+                int list = p.a[expr];
+                int end = list + 1 + p.lists[list];
+                NPLMap map = new NPLMap(p.lists[list] / 2);
+                for (int i = list + 1; i < end; i += 2) {
+                    eval(p.lists[i]);
+                    byte kt = tag;
+                    double kd = dv;
+                    long ki = iv;
+                    Object kr = rv;
+                    eval(p.lists[i + 1]);
+                    put(map, kt, kd, ki, kr, boxed());
+                }
+                setRef(map);
+                return;
+            }
+            default:
+                throw new RuntimeException("Unknown expression kind: " + p.kind[expr]);
+        }
+    }
+
+    private void binary(int expr) {
+        byte op = p.op[expr];
+        eval(p.a[expr]);
+        byte lt = tag;
+        double ld = dv;
+        long li = iv;
+        eval(p.b[expr]);
+        if ((lt != NUM && lt != INT) || (tag != NUM && tag != INT)) {
+            throw new RuntimeException("Unsupported operand types for '" + Arithmetic.symbol(op) + "'");
+        }
+        if (lt == INT && tag == INT) {
+            if (op == OP_DIV) {
+                setDouble((double) li / (double) iv);
+            } else {
+                setLong(Arithmetic.applyLong(op, li, iv));
+            }
+            return;
+        }
+        double l = lt == INT ? li : ld;
+        double r = tag == INT ? iv : dv;
+        if (Arithmetic.isLogical(op)) {
+            setLong(Arithmetic.compareDouble(op, l, r));
+        } else {
+            setDouble(Arithmetic.applyDouble(op, l, r));
+        }
+    }
+
+    private NativeFunction resolve(int call) {
+        int site = p.a[call];
+        NativeFunction fn = linked[site];
+        if (fn == null) {
+            fn = natives.lookup(p.callNames[site]);
+            if (fn == null) {
+                throw new RuntimeException("Unknown function: " + p.callNames[site]);
+            }
+            linked[site] = fn;
+        }
+        return fn;
+    }
+
+    private void call(int expr) {
+        NativeFunction fn = resolve(expr);
+        int args = p.b[expr];
+        int n = p.lists[args];
+        if (fn.unary() != null && n == 1) {
+            setDouble(fn.unary().applyAsDouble(numberArgument(p.lists[args + 1])));
+            return;
+        }
+        if (fn.binary() != null && n == 2) {
+            double x = numberArgument(p.lists[args + 1]);
+            setDouble(fn.binary().applyAsDouble(x, numberArgument(p.lists[args + 2])));
+            return;
+        }
+        Object[] values = new Object[n];
+        for (int i = 0; i < n; i++) {
+            eval(p.lists[args + 1 + i]);
+            values[i] = boxed();
+        }
+        setValue(fn.invoke(values));
+    }
+
+    private double numberArgument(int expr) {
+        eval(expr);
+        if (tag == NUM) return dv;
+        if (tag == INT) return iv;
+        throw new RuntimeException("Only numbers can be passed to a numeric parameter.");
+    }
+
+    private Object boxed() {
+        switch (tag) {
+            case NUM: return dv;
+            case INT: return iv;
+            default:  return rv;
+        }
+    }
+
+    private void setValue(Object value) {
+        if (value instanceof Long) {
+            setLong((Long) value);
+        } else if (value instanceof Double) {
+            setDouble((Double) value);
+        } else {
+            setRef(value);
+        }
+    }
+
+    private void setDouble(double value) {
+        tag = NUM;
+        dv = value;
+    }
+
+    private void setLong(long value) {
+        tag = INT;
+        iv = value;
+    }
+
+    private void setRef(Object value) {
+        tag = REF;
+        rv = value;
+    }
+}
@@ -1,15 +1,38 @@
 package com.npl.interpreter;
 
 import com.npl.ast.*;
+import com.npl.interop.NativeFunction;
+import com.npl.interop.NativeRegistry;
 import com.npl.lexer.TokenType;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
 
 public class InterpreterEngine {
-    private final Map<String, Object> variables = new HashMap<>();
+    private static final int MAX_PARALLEL_CHUNKS = 256;
+
+    private final Map<String, Object> variables;
+    private final NativeRegistry natives;
     private final StringBuilder output = new StringBuilder();
+    private long statementsExecuted;
+    private final CompoundUpdate compoundUpdate = new CompoundUpdate();
+
+    public InterpreterEngine() {
+        this(NativeRegistry.global());
+    }
+
+    public InterpreterEngine(NativeRegistry natives) {
+        this(new HashMap<>(), natives);
+    }
+
+    private InterpreterEngine(Map<String, Object> variables, NativeRegistry natives) {
+        this.variables = variables;
+        this.natives = natives;
+    }
 
     public void interpret(Program program) {
         for (Statement stmt : program.statements) {
@@ -21,7 +44,12 @@ public class InterpreterEngine {
         return output.toString();
     }
 
+    public long getStatementsExecuted() {
+        return statementsExecuted;
+    }
+
     private void execute(Statement stmt) {
+        statementsExecuted++;
         if (stmt instanceof PrintStatement) {
             List<Expression> expressions = ((PrintStatement) stmt).expressions;
             for (Expression expr : expressions) {
@@ -36,8 +64,7 @@ public class InterpreterEngine {
             variables.put(as.variable, val);
         } else if (stmt instanceof IfStatement) {
             IfStatement is = (IfStatement) stmt;
-            Object cond = evaluate(is.condition);
-            if (isTruthy(cond)) {
+            if (evaluateCondition(is.condition)) {
                 for (Statement s : is.thenBranch) {
                     execute(s);
                 }
@@ -48,40 +75,298 @@ public class InterpreterEngine {
             }
         } else if (stmt instanceof WhileStatement) {
             WhileStatement ws = (WhileStatement) stmt;
-            while (isTruthy(evaluate(ws.condition))) {
+            while (evaluateCondition(ws.condition)) {
                 for (Statement s : ws.body) {
                     execute(s);
                 }
             }
+        } else if (stmt instanceof ParallelForStatement) {
+            executeParallelFor((ParallelForStatement) stmt);
         } else if (stmt instanceof ForStatement) {
             ForStatement fs = (ForStatement) stmt;
             execute(fs.initialization);
-            while (isTruthy(evaluate(fs.condition))) {
+            while (evaluateCondition(fs.condition)) {
                 for (Statement s : fs.body) {
                     execute(s);
                 }
                 execute(fs.update);
             }
+        } else if (stmt instanceof CompoundAssignmentStatement) {
+            CompoundAssignmentStatement cs = (CompoundAssignmentStatement) stmt;
+            CompoundUpdate update = compoundUpdate;
+            if (cs.expression.inferredType == ValueType.INTEGER) {
+                update.integerOperand = true;
+                update.longOperand = evaluateInteger(cs.expression);
+            } else if (cs.expression.inferredType == ValueType.NUMBER) {
+                update.integerOperand = false;
+                update.doubleOperand = evaluateNumber(cs.expression);
+            } else {
+                Object r = evaluate(cs.expression);
+                if (r instanceof Long) {
+                    update.integerOperand = true;
+                    update.longOperand = (Long) r;
+                } else if (r instanceof Double) {
+                    update.integerOperand = false;
+                    update.doubleOperand = (Double) r;
+                } else {
+                    throw new RuntimeException("Only numbers support compound assignment.");
+                }
+            }
+            update.opCode = cs.opCode;
+            // одно обращение к таблице: значение заменяется прямо в найденной записи
+            variables.compute(cs.variable, update);
+        } else if (stmt instanceof IndexAssignmentStatement) {
+            executeIndexAssignment((IndexAssignmentStatement) stmt);
+        } else if (stmt instanceof ForInStatement) {
+            ForInStatement fs = (ForInStatement) stmt;
+            NPLMap map = evaluateMap(fs.iterable, "Only maps can be iterated.");
+            int mods = map.modCount();
+            for (int e = map.next(0); e >= 0; e = map.next(e + 1)) {
+                variables.put(fs.variable, map.keyAt(e));
+                for (Statement s : fs.body) {
+                    execute(s);
+                }
+                // замена значения по существующему ключу разрешена, добавление и удаление — нет
+                if (map.modCount() != mods) {
+                    throw new RuntimeException("Map changed size during iteration.");
+                }
+            }
+        } else if (stmt instanceof ExpressionStatement) {
+            evaluate(((ExpressionStatement) stmt).expression);
         } else if (stmt instanceof PostfixExpressionStatement) {
             PostfixExpressionStatement ps = (PostfixExpressionStatement) stmt;
             Object val = variables.get(ps.getVarName());
-            if (val == null) {
-                throw new RuntimeException("Undefined variable: " + ps.getVarName());
+            long delta = ps.getOp() == TokenType.INCREMENT ? 1 : -1;
+            if (!ps.getTargetType().isNumeric()) {
+                if (val == null) {
+                    throw new RuntimeException("Undefined variable: " + ps.getVarName());
+                }
+                if (!Arithmetic.isNumber(val)) {
+                    throw new RuntimeException("Only numbers can be incremented/decremented.");
+                }
             }
-            if (!(val instanceof Double)) {
-                throw new RuntimeException("Only numbers can be incremented/decremented.");
+            variables.put(ps.getVarName(), Arithmetic.increment(val, delta));
+        }
+    }
+
+    private void executeIndexAssignment(IndexAssignmentStatement is) {
+        NPLMap map = evaluateMap(is.target, "Only maps support item assignment.");
+        if (is.operator == null) {
+            if (is.key.inferredType == ValueType.INTEGER) {
+                long key = evaluateInteger(is.key);
+                map.put(key, evaluate(is.expression));
+            } else {
+                Object key = evaluate(is.key);
+                map.put(key, evaluate(is.expression));
             }
-            double num = (Double) val;
-            if (ps.getOp() == TokenType.INCREMENT) {
-                variables.put(ps.getVarName(), num + 1);
-            } else if (ps.getOp() == TokenType.DECREMENT) {
-                variables.put(ps.getVarName(), num - 1);
+            return;
+        }
+        Object key = evaluate(is.key);
+        Object operand = evaluate(is.expression);
+        int entry = map.require(key);
+        Object result = Arithmetic.apply(is.opCode, map.valueAt(entry), operand);
+        if (result == null) {
+            throw new RuntimeException("Only numbers support compound assignment.");
+        }
+        map.setValueAt(entry, result);
+    }
+
+    private NPLMap evaluateMap(Expression expr, String message) {
+        Object value = evaluate(expr);
+        if (!(value instanceof NPLMap)) {
+            throw new RuntimeException(message);
+        }
+        return (NPLMap) value;
+    }
+
+    private void executeParallelFor(ParallelForStatement pf) {
+        Object startValue = evaluate(pf.start);
+        Object bound = evaluate(pf.bound);
+        if (!Arithmetic.isNumber(startValue) || !Arithmetic.isNumber(bound)) {
+            throw new RuntimeException("parallel for bounds must be numbers.");
+        }
+        // счётчик всегда целый, поэтому k-я итерация видит ровно start + k * step,
+        // как и последовательный цикл
+        if (!(startValue instanceof Long)) {
+            throw new RuntimeException("parallel for start must be an integer.");
+        }
+        long start = (Long) startValue;
+        long step = pf.step;
+        long count;
+        if (bound instanceof Long) {
+            long to = (Long) bound;
+            if (pf.inclusive) {
+                count = to >= start ? (to - start) / step + 1 : 0;
+            } else {
+                count = to > start ? (to - start + step - 1) / step : 0;
             }
+        } else {
+            // дробная граница: i < 2.5 при целом i — то же, что i <= 2
+            double to = (Double) bound;
+            double last = pf.inclusive ? Math.floor(to) : Math.ceil(to) - 1;
+            count = last >= start ? (long) ((last - start) / step) + 1 : 0;
+        }
+
+        String[] names = pf.reductions.keySet().toArray(new String[0]);
+        String[] kinds = pf.reductions.values().toArray(new String[0]);
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if (!variables.containsKey(names[i])) {
+                throw new RuntimeException("Undefined variable: " + names[i]);
+            }
+            values[i] = variables.get(names[i]);
+            if (!Arithmetic.isNumber(values[i])) {
+                throw new RuntimeException("Reduction variable must be a number: " + names[i]);
+            }
+        }
+
+        if (count > 0) {
+            // размер куска зависит только от числа итераций, поэтому порядок свёртки
+            // (и результат суммы с плавающей точкой) не зависит от числа ядер
+            long grain = Math.max(1, (count + MAX_PARALLEL_CHUNKS - 1) / MAX_PARALLEL_CHUNKS);
+            ParallelChunk root = new ParallelChunk(this, pf, names, kinds, start, 0, count, grain);
+            ChunkResult result = ForkJoinPool.commonPool().invoke(root);
+            output.append(result.output);
+            statementsExecuted += result.statements;
+            if (result.error != null) {
+                throw result.error;
+            }
+            for (int i = 0; i < names.length; i++) {
+                values[i] = combine(kinds[i], values[i], result.reductions[i]);
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            variables.put(names[i], values[i]);
+        }
+        variables.put(pf.variable, start + count * step);
+    }
+
+    private static Object identity(String kind) {
+        switch (kind) {
+            case "min": return Double.POSITIVE_INFINITY;
+            case "max": return Double.NEGATIVE_INFINITY;
+            default:    return 0L;
+        }
+    }
+
+    // min/max возвращают сам операнд, чтобы целые оставались целыми
+    private static Object combine(String kind, Object a, Object b) {
+        switch (kind) {
+            case "min": return compare(b, a) < 0 ? b : a;
+            case "max": return compare(b, a) > 0 ? b : a;
+            default:    return Arithmetic.apply(FlatProgram.OP_ADD, a, b);
+        }
+    }
+
+    private static int compare(Object a, Object b) {
+        if (a instanceof Long && b instanceof Long) {
+            return Long.compare((Long) a, (Long) b);
+        }
+        return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+    }
+
+    private static final class ChunkResult {
+        final StringBuilder output;
+        final Object[] reductions;
+        long statements;
+        // ошибка первой упавшей итерации куска; вывод и счётчик — до неё
+        RuntimeException error;
+
+        ChunkResult(StringBuilder output, Object[] reductions, long statements, RuntimeException error) {
+            this.output = output;
+            this.reductions = reductions;
+            this.statements = statements;
+            this.error = error;
+        }
+    }
+
+    // диапазон [lo, hi) итераций; каждый лист работает в своём InterpreterEngine
+    // с копией переменных, вывод и редукции склеиваются в порядке итераций
+    private static final class ParallelChunk extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final InterpreterEngine parent;
+        private final ParallelForStatement pf;
+        private final String[] names;
+        private final String[] kinds;
+        private final long start;
+        private final long lo;
+        private final long hi;
+        private final long grain;
+
+        ParallelChunk(InterpreterEngine parent, ParallelForStatement pf, String[] names, String[] kinds,
+                      long start, long lo, long hi, long grain) {
+            this.parent = parent;
+            this.pf = pf;
+            this.names = names;
+            this.kinds = kinds;
+            this.start = start;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            if (hi - lo <= grain) {
+                return runLeaf();
+            }
+            long mid = lo + (hi - lo) / 2;
+            ParallelChunk left = new ParallelChunk(parent, pf, names, kinds, start, lo, mid, grain);
+            ParallelChunk right = new ParallelChunk(parent, pf, names, kinds, start, mid, hi, grain);
+            left.fork();
+            ChunkResult r = right.compute();
+            ChunkResult l = left.join();
+            // как в последовательном цикле, побеждает ошибка с меньшим номером итерации,
+            // и вывод после неё отбрасывается
+            if (l.error != null) {
+                return l;
+            }
+            l.output.append(r.output);
+            l.statements += r.statements;
+            if (r.error != null) {
+                l.error = r.error;
+                return l;
+            }
+            for (int i = 0; i < names.length; i++) {
+                l.reductions[i] = combine(kinds[i], l.reductions[i], r.reductions[i]);
+            }
+            return l;
+        }
+
+        // ошибка не бросается, а возвращается в результате: исключение, прошедшее через
+        // ForkJoinTask.join, приходит копией с обёрнутым сообщением
+        private ChunkResult runLeaf() {
+            // родитель заблокирован в invoke, поэтому его таблицу можно безопасно читать
+            InterpreterEngine worker = new InterpreterEngine(new HashMap<>(parent.variables), parent.natives);
+            for (int i = 0; i < names.length; i++) {
+                worker.variables.put(names[i], identity(kinds[i]));
+            }
+            Object[] values = new Object[names.length];
+            try {
+                for (long k = lo; k < hi; k++) {
+                    worker.variables.put(pf.variable, start + k * pf.step);
+                    for (Statement s : pf.body) {
+                        worker.execute(s);
+                    }
+                }
+                for (int i = 0; i < names.length; i++) {
+                    values[i] = worker.variables.get(names[i]);
+                    if (!Arithmetic.isNumber(values[i])) {
+                        throw new RuntimeException("Reduction variable must stay a number: " + names[i]);
+                    }
+                }
+            } catch (RuntimeException e) {
+                return new ChunkResult(worker.output, null, worker.statementsExecuted, e);
+            }
+            return new ChunkResult(worker.output, values, worker.statementsExecuted, null);
         }
     }
 
     private Object evaluate(Expression expr) {
-        if (expr instanceof NumberExpression) {
+        if (expr instanceof IntegerExpression) {
+            return ((IntegerExpression) expr).value;
+        } else if (expr instanceof NumberExpression) {
             return ((NumberExpression) expr).value;
         } else if (expr instanceof StringExpression) {
             return ((StringExpression) expr).value;
@@ -92,45 +377,173 @@ public class InterpreterEngine {
             }
             return variables.get(name);
         } else if (expr instanceof BooleanExpression) {
-            return ((BooleanExpression) expr).getValue() ? 1.0 : 0.0;
+            return ((BooleanExpression) expr).getValue() ? 1L : 0L;
         } else if (expr instanceof NoneExpression) {
             return null;
+        } else if (expr instanceof CallExpression) {
+            return callNative((CallExpression) expr);
+        } else if (expr instanceof IndexExpression) {
+            IndexExpression ie = (IndexExpression) expr;
+            NPLMap map = evaluateMap(ie.target, "Only maps can be indexed.");
+            // доказанно целый ключ ищется без упаковки
+            if (ie.key.inferredType == ValueType.INTEGER) {
+                return map.get(evaluateInteger(ie.key));
+            }
+            return map.get(evaluate(ie.key));
+        } else if (expr instanceof MapExpression) {
+            MapExpression me = (MapExpression) expr;
+            NPLMap map = new NPLMap(me.keys.size());
+            for (int i = 0; i < me.keys.size(); i++) {
+                Object key = evaluate(me.keys.get(i));
+                map.put(key, evaluate(me.values.get(i)));
+            }
+            return map;
         } else if (expr instanceof BinaryExpression) {
             BinaryExpression be = (BinaryExpression) expr;
-            Object left = evaluate(be.left);
-            Object right = evaluate(be.right);
-            String op = be.operator;
-
-            if (left instanceof Double && right instanceof Double) {
-                double l = (Double) left;
-                double r = (Double) right;
-                switch (op) {
-                    case "+":  return l + r;
-                    case "-":  return l - r;
-                    case "*":  return l * r;
-                    case "/":  return l / r;
-                    case "==": return (l == r) ? 1.0 : 0.0;
-                    case "!=" : return (l != r) ? 1.0 : 0.0;
-                    case "<":  return (l < r)  ? 1.0 : 0.0;
-                    case ">":  return (l > r)  ? 1.0 : 0.0;
-                    case "<=": return (l <= r) ? 1.0 : 0.0;
-                    case ">=": return (l >= r) ? 1.0 : 0.0;
-                    case "and": return (l != 0.0 && r != 0.0) ? 1.0 : 0.0;
-                    case "or":  return (l != 0.0 || r != 0.0) ? 1.0 : 0.0;
+            if (isProvenNumeric(be)) {
+                if (be.inferredType == ValueType.INTEGER) {
+                    return evaluateInteger(be);
                 }
+                return evaluateNumber(be);
             }
+            Object result = Arithmetic.apply(be.opCode, evaluate(be.left), evaluate(be.right));
+            if (result != null) {
+                return result;
+            }
+            throw new RuntimeException("Unsupported operand types for '" + be.operator + "'");
         }
         throw new RuntimeException("Unknown expression type: " + expr.getClass());
     }
 
-    private boolean isTruthy(Object value) {
-        if (value instanceof Double) {
-            return (Double) value != 0.0;
-        } else if (value instanceof String) {
-            return !((String) value).isEmpty();
-        } else if (value instanceof Boolean) {
-            return (Boolean) value;
+    // вызывается только для выражений, чей тип TypeInference доказал как NUMBER или INTEGER
+    private double evaluateNumber(Expression expr) {
+        if (expr.inferredType == ValueType.INTEGER) {
+            return evaluateInteger(expr);
+        } else if (expr instanceof NumberExpression) {
+            return ((NumberExpression) expr).value;
+        } else if (expr instanceof VariableExpression) {
+            return (Double) variables.get(((VariableExpression) expr).name);
+        } else if (expr instanceof BinaryExpression) {
+            BinaryExpression be = (BinaryExpression) expr;
+            if (isProvenNumeric(be)) {
+                return Arithmetic.applyDouble(be.opCode, evaluateNumber(be.left), evaluateNumber(be.right));
+            }
+        } else if (expr instanceof CallExpression) {
+            return callNumber((CallExpression) expr);
+        }
+        return ((Number) evaluate(expr)).doubleValue();
+    }
+
+    // вызывается только для выражений, чей тип доказан как INTEGER
+    private long evaluateInteger(Expression expr) {
+        if (expr instanceof IntegerExpression) {
+            return ((IntegerExpression) expr).value;
+        } else if (expr instanceof BooleanExpression) {
+            return ((BooleanExpression) expr).getValue() ? 1 : 0;
+        } else if (expr instanceof VariableExpression) {
+            return (Long) variables.get(((VariableExpression) expr).name);
+        } else if (expr instanceof BinaryExpression) {
+            BinaryExpression be = (BinaryExpression) expr;
+            if (isProvenNumeric(be)) {
+                if (be.left.inferredType == ValueType.INTEGER && be.right.inferredType == ValueType.INTEGER) {
+                    return Arithmetic.applyLong(be.opCode, evaluateInteger(be.left), evaluateInteger(be.right));
+                }
+                return Arithmetic.compareDouble(be.opCode, evaluateNumber(be.left), evaluateNumber(be.right));
+            }
+        }
+        return (Long) evaluate(expr);
+    }
+
+    private NativeFunction resolve(CallExpression call) {
+        NativeFunction fn = call.target;
+        if (fn == null) {
+            fn = natives.lookup(call.name);
+            if (fn == null) {
+                throw new RuntimeException("Unknown function: " + call.name);
+            }
+        }
+        return fn;
+    }
+
+    // double-сигнатуры идут через DoubleUnaryOperator/DoubleBinaryOperator без упаковки
+    private double callNumber(CallExpression call) {
+        NativeFunction fn = resolve(call);
+        List<Expression> args = call.arguments;
+        if (fn.unary() != null && args.size() == 1) {
+            return fn.unary().applyAsDouble(numberArgument(args.get(0)));
+        }
+        if (fn.binary() != null && args.size() == 2) {
+            return fn.binary().applyAsDouble(numberArgument(args.get(0)), numberArgument(args.get(1)));
+        }
+        Object value = invokeGeneric(fn, args);
+        if (!Arithmetic.isNumber(value)) {
+            throw new RuntimeException("Function " + call.name + " did not return a number.");
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    private Object callNative(CallExpression call) {
+        NativeFunction fn = resolve(call);
+        int n = call.arguments.size();
+        if ((fn.unary() != null && n == 1) || (fn.binary() != null && n == 2)) {
+            return callNumber(call);
+        }
+        return invokeGeneric(fn, call.arguments);
+    }
+
+    private Object invokeGeneric(NativeFunction fn, List<Expression> arguments) {
+        Object[] args = new Object[arguments.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = evaluate(arguments.get(i));
+        }
+        return fn.invoke(args);
+    }
+
+    private double numberArgument(Expression arg) {
+        if (arg.inferredType.isNumeric()) {
+            return evaluateNumber(arg);
+        }
+        Object value = evaluate(arg);
+        if (!Arithmetic.isNumber(value)) {
+            throw new RuntimeException("Only numbers can be passed to a numeric parameter.");
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    private static boolean isProvenNumeric(BinaryExpression be) {
+        return be.left.inferredType.isNumeric() && be.right.inferredType.isNumeric();
+    }
+
+    private boolean evaluateCondition(Expression condition) {
+        if (condition.inferredType == ValueType.INTEGER) {
+            return evaluateInteger(condition) != 0;
+        } else if (condition.inferredType == ValueType.NUMBER) {
+            return evaluateNumber(condition) != 0.0;
+        }
+        return Arithmetic.isTruthy(evaluate(condition));
+    }
+
+    // переиспользуемая функция для Map.compute, чтобы не создавать лямбду на каждое x += ...
+    private static final class CompoundUpdate implements BiFunction<String, Object, Object> {
+        byte opCode;
+        boolean integerOperand;
+        long longOperand;
+        double doubleOperand;
+
+        @Override
+        public Object apply(String name, Object val) {
+            if (val instanceof Long) {
+                if (integerOperand && opCode != FlatProgram.OP_DIV) {
+                    return Arithmetic.applyLong(opCode, (Long) val, longOperand);
+                }
+                return Arithmetic.applyDouble(opCode, (Long) val, integerOperand ? longOperand : doubleOperand);
+            }
+            if (val instanceof Double) {
+                return Arithmetic.applyDouble(opCode, (Double) val, integerOperand ? longOperand : doubleOperand);
+            }
+            throw new RuntimeException(val == null
+                    ? "Undefined variable: " + name
+                    : "Only numbers support compound assignment.");
         }
-        return value != null;
     }
 }
@@ -0,0 +1,364 @@
+package com.npl.interpreter;
+
+// словарь NPL: записи лежат плотными массивами в порядке вставки, а поиск идёт
+// по открытой адресации (линейное пробирование) в long[] индексе.
+// Слот индекса хранит хэш, вид ключа и номер записи, поэтому при пробировании
+// массивы записей читаются только при совпадении хэша.
+// Ключ — вид + 64 бита (long или биты double) либо строка, поэтому поиск по числу
+// не упаковывает его и не создаёт объектов-записей.
+// Целые double приводятся к long, так что m[1] и m[1.0] — один ключ, как и 1 == 1.0
+public final class NPLMap {
+    public static final byte DEAD = 0;
+    public static final byte LONG_KEY = 1;
+    public static final byte DOUBLE_KEY = 2;
+    public static final byte STRING_KEY = 3;
+
+    // слот: старшие 32 бита — хэш, биты 30..31 — вид ключа, младшие 30 — номер записи + 1;
+    // 0 — пусто, у удалённого слота номер записи 0
+    private static final long EMPTY = 0;
+    private static final long DELETED = -1L << 32;
+    private static final int ENTRY_BITS = 30;
+    private static final long ENTRY_MASK = (1L << ENTRY_BITS) - 1;
+    private static final int MAX_CAPACITY = 1 << 29;
+    private static final int MIN_CAPACITY = 8;
+
+    private byte[] kinds;
+    private long[] bits;
+    private String[] strings;
+    private Object[] values;
+    private int[] hashes;
+    private long[] index;
+    // занятых записей, включая удалённые
+    private int used;
+    private int size;
+    // меняется при добавлении/удалении ключа, чтобы ловить изменение словаря во время обхода
+    private int modCount;
+
+    public NPLMap() {
+        this(0);
+    }
+
+    public NPLMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int modCount() {
+        return modCount;
+    }
+
+    // поиск: номер записи или -1
+
+    public int find(long key) {
+        int h = hashLong(key);
+        long tag = tag(h, LONG_KEY);
+        int mask = index.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            long slot = index[i];
+            if (slot == EMPTY) return -1;
+            if ((slot & ~ENTRY_MASK) == tag) {
+                int e = (int) (slot & ENTRY_MASK) - 1;
+                if (bits[e] == key) return e;
+            }
+        }
+    }
+
+    public int find(double key) {
+        if (isIntegral(key)) {
+            return find((long) key);
+        }
+        long b = doubleBits(key);
+        int h = hashLong(b);
+        long tag = tag(h, DOUBLE_KEY);
+        int mask = index.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            long slot = index[i];
+            if (slot == EMPTY) return -1;
+            if ((slot & ~ENTRY_MASK) == tag) {
+                int e = (int) (slot & ENTRY_MASK) - 1;
+                if (bits[e] == b) return e;
+            }
+        }
+    }
+
+    public int find(String key) {
+        int h = hashString(key);
+        long tag = tag(h, STRING_KEY);
+        int mask = index.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            long slot = index[i];
+            if (slot == EMPTY) return -1;
+            if ((slot & ~ENTRY_MASK) == tag) {
+                int e = (int) (slot & ENTRY_MASK) - 1;
+                if (strings[e].equals(key)) return e;
+            }
+        }
+    }
+
+    public int find(Object key) {
+        if (key instanceof Long) return find((long) (Long) key);
+        if (key instanceof Double) return find((double) (Double) key);
+        if (key instanceof String) return find((String) key);
+        throw badKey(key);
+    }
+
+    public Object get(long key) {
+        int e = find(key);
+        if (e < 0) throw notFound(key);
+        return values[e];
+    }
+
+    public Object get(double key) {
+        int e = find(key);
+        if (e < 0) throw notFound(key);
+        return values[e];
+    }
+
+    public Object get(String key) {
+        int e = find(key);
+        if (e < 0) throw notFound(key);
+        return values[e];
+    }
+
+    public Object get(Object key) {
+        int e = find(key);
+        if (e < 0) throw notFound(key);
+        return values[e];
+    }
+
+    // номер записи; отсутствие ключа — ошибка
+    public int require(Object key) {
+        int e = find(key);
+        if (e < 0) throw notFound(key);
+        return e;
+    }
+
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    // вставка или замена
+
+    public void put(long key, Object value) {
+        int e = find(key);
+        if (e >= 0) {
+            values[e] = value;
+            return;
+        }
+        insert(LONG_KEY, key, null, hashLong(key), value);
+    }
+
+    public void put(double key, Object value) {
+        if (isIntegral(key)) {
+            put((long) key, value);
+            return;
+        }
+        int e = find(key);
+        if (e >= 0) {
+            values[e] = value;
+            return;
+        }
+        long b = doubleBits(key);
+        insert(DOUBLE_KEY, b, null, hashLong(b), value);
+    }
+
+    public void put(String key, Object value) {
+        int e = find(key);
+        if (e >= 0) {
+            values[e] = value;
+            return;
+        }
+        insert(STRING_KEY, 0, key, hashString(key), value);
+    }
+
+    public void put(Object key, Object value) {
+        if (key instanceof Long) put((long) (Long) key, value);
+        else if (key instanceof Double) put((double) (Double) key, value);
+        else if (key instanceof String) put((String) key, value);
+        else throw badKey(key);
+    }
+
+    // удалённое значение или null, если ключа не было
+    public Object remove(Object key) {
+        int e = find(key);
+        if (e < 0) {
+            return null;
+        }
+        Object old = values[e];
+        int mask = index.length - 1;
+        for (int i = hashes[e] & mask; ; i = (i + 1) & mask) {
+            if ((index[i] & ENTRY_MASK) == e + 1) {
+                index[i] = DELETED;
+                break;
+            }
+        }
+        kinds[e] = DEAD;
+        strings[e] = null;
+        values[e] = null;
+        size--;
+        modCount++;
+        return old;
+    }
+
+    // обход: for (int e = m.next(0); e >= 0; e = m.next(e + 1))
+
+    public int next(int from) {
+        for (int e = from; e < used; e++) {
+            if (kinds[e] != DEAD) return e;
+        }
+        return -1;
+    }
+
+    public byte keyKind(int entry) {
+        return kinds[entry];
+    }
+
+    public long longKey(int entry) {
+        return bits[entry];
+    }
+
+    public double doubleKey(int entry) {
+        return Double.longBitsToDouble(bits[entry]);
+    }
+
+    public String stringKey(int entry) {
+        return strings[entry];
+    }
+
+    public Object keyAt(int entry) {
+        switch (kinds[entry]) {
+            case LONG_KEY:   return bits[entry];
+            case DOUBLE_KEY: return Double.longBitsToDouble(bits[entry]);
+            default:         return strings[entry];
+        }
+    }
+
+    public Object valueAt(int entry) {
+        return values[entry];
+    }
+
+    public void setValueAt(int entry, Object value) {
+        values[entry] = value;
+    }
+
+    private void insert(byte kind, long keyBits, String key, int hash, Object value) {
+        if (used == kinds.length || (used + 1) * 2 > index.length) {
+            rebuild(capacityFor(size + 1));
+        }
+        int e = used++;
+        kinds[e] = kind;
+        bits[e] = keyBits;
+        strings[e] = key;
+        values[e] = value;
+        hashes[e] = hash;
+        place(e);
+        size++;
+        modCount++;
+    }
+
+    // удалённые слоты занимаются повторно: вставка идёт только после неудачного поиска
+    private void place(int entry) {
+        int mask = index.length - 1;
+        int i = hashes[entry] & mask;
+        while ((index[i] & ENTRY_MASK) != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = tag(hashes[entry], kinds[entry]) | (entry + 1);
+    }
+
+    // уплотняет записи (выбрасывая удалённые) и перестраивает индекс без надгробий
+    private void rebuild(int capacity) {
+        byte[] oldKinds = kinds;
+        long[] oldBits = bits;
+        String[] oldStrings = strings;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int oldUsed = used;
+        allocate(capacity);
+        int n = 0;
+        for (int e = 0; e < oldUsed; e++) {
+            if (oldKinds[e] == DEAD) continue;
+            kinds[n] = oldKinds[e];
+            bits[n] = oldBits[e];
+            strings[n] = oldStrings[e];
+            values[n] = oldValues[e];
+            hashes[n] = oldHashes[e];
+            place(n);
+            n++;
+        }
+        used = n;
+        modCount++;
+    }
+
+    private void allocate(int capacity) {
+        kinds = new byte[capacity];
+        bits = new long[capacity];
+        strings = new String[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        // заполненность индекса не больше половины
+        index = new long[capacity * 2];
+        used = 0;
+    }
+
+    // запас в полтора раза, чтобы подряд идущие вставки не перестраивали таблицу каждый раз
+    private static int capacityFor(int entries) {
+        if (entries >= MAX_CAPACITY) {
+            throw new RuntimeException("Map is too large: " + entries + " entries");
+        }
+        int need = Math.max(MIN_CAPACITY, entries + (entries >> 1));
+        return need > MAX_CAPACITY / 2 ? MAX_CAPACITY : Integer.highestOneBit(need - 1) << 1;
+    }
+
+    private static long tag(int hash, byte kind) {
+        return ((long) hash << 32) | ((long) kind << ENTRY_BITS);
+    }
+
+    private static boolean isIntegral(double d) {
+        return d == Math.rint(d) && Math.abs(d) < 0x1p63;
+    }
+
+    // все NaN — один ключ
+    private static long doubleBits(double d) {
+        return Double.doubleToLongBits(d);
+    }
+
+    private static int hashLong(long x) {
+        long h = x * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int hashString(String s) {
+        int h = s.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // ключ упаковывается только здесь, на пути ошибки
+    private static RuntimeException notFound(Object key) {
+        return new RuntimeException("Key not found: " + formatKey(key));
+    }
+
+    private static RuntimeException badKey(Object key) {
+        return new RuntimeException("Map keys must be strings or numbers, got "
+                + (key == null ? "none" : key instanceof NPLMap ? "map" : key.getClass().getSimpleName()));
+    }
+
+    private static String formatKey(Object key) {
+        return key instanceof String ? "'" + key + "'" : String.valueOf(key);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int e = next(0); e >= 0; e = next(e + 1)) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(formatKey(keyAt(e))).append(": ");
+            Object v = values[e];
+            sb.append(v == this ? "{...}" : v instanceof String ? "'" + v + "'" : v);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -4,6 +4,9 @@ public class Lexer {
     private final String input;
     private int pos;
     private char currentChar;
+    private boolean timed;
+    private long tokenCount;
+    private long elapsedNanos;
 
     public Lexer(String input) {
         this.input = input;
@@ -11,11 +14,27 @@ public class Lexer {
         this.currentChar = input.length() > 0 ? input.charAt(0) : '\0';
     }
 
+    public void enableTiming() {
+        timed = true;
+    }
+
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
     private void advance() {
         pos++;
         currentChar = pos < input.length() ? input.charAt(pos) : '\0';
     }
 
+    private char peek() {
+        return pos + 1 < input.length() ? input.charAt(pos + 1) : '\0';
+    }
+
     private void skipWhitespace() {
         while (Character.isWhitespace(currentChar)) {
             advance();
@@ -73,13 +92,27 @@ public class Lexer {
     }
 
     public Token getNextToken() {
+        tokenCount++;
+        if (!timed) {
+            return scanToken();
+        }
+        long start = System.nanoTime();
+        try {
+            return scanToken();
+        } finally {
+            elapsedNanos += System.nanoTime() - start;
+        }
+    }
+
+    private Token scanToken() {
         while (currentChar != '\0') {
             if (Character.isWhitespace(currentChar)) {
                 skipWhitespace();
                 continue;
             }
             
-            if (currentChar == '/') {
+            // одиночный '/' — оператор деления, его разбирает switch ниже
+            if (currentChar == '/' && (peek() == '/' || peek() == '*')) {
                 if (currentChar == '/') {
                     advance();
                     if (currentChar == '/') {
@@ -119,6 +152,9 @@ public class Lexer {
                     case "else": return new Token(TokenType.ELSE, id);
                     case "while": return new Token(TokenType.WHILE, id);
                     case "for": return new Token(TokenType.FOR, id);
+                    case "parallel": return new Token(TokenType.PARALLEL, id);
+                    case "reduce": return new Token(TokenType.REDUCE, id);
+                    case "in": return new Token(TokenType.IN, id);
                     case "end": return new Token(TokenType.END, id);
                     case "true": return new Token(TokenType.TRUE, id);
                     case "false": return new Token(TokenType.FALSE, id);
@@ -133,6 +169,9 @@ public class Lexer {
                 case ')': advance(); return new Token(TokenType.RPAREN, ")");
                 case '{': advance(); return new Token(TokenType.LBRACE, "{");
                 case '}': advance(); return new Token(TokenType.RBRACE, "}");
+                case '[': advance(); return new Token(TokenType.LBRACKET, "[");
+                case ']': advance(); return new Token(TokenType.RBRACKET, "]");
+                case ':': advance(); return new Token(TokenType.COLON, ":");
                 case ';': advance(); return new Token(TokenType.SEMICOLON, ";");
                 case ',': advance(); return new Token(TokenType.COMMA, ",");
                 case '+':
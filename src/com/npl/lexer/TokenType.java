@@ -2,12 +2,13 @@ package com.npl.lexer;
 
 public enum TokenType {
     // ключевые слова
-    PRINT, IF, ELSE, WHILE, FOR, END,
+    PRINT, IF, ELSE, WHILE, FOR, END, PARALLEL, REDUCE, IN,
     // операторы и разделители
     PLUS, MINUS, MULT, DIV, PLUS_ASSIGN, 
     MINUS_ASSIGN, MULT_ASSIGN, DIV_ASSIGN,
     INCREMENT, DECREMENT, ASSIGN, SEMICOLON,
     LPAREN, RPAREN, LBRACE, RBRACE,
+    LBRACKET, RBRACKET, COLON,
     EQ, NEQ, LT, GT, LEQ, GEQ, COMMA,
     OR, AND,
     // инднтификаторы и литералы
@@ -0,0 +1,36 @@
+package com.npl.metrics;
+
+public class HistogramSnapshot {
+    private final long count;
+    private final long sum;
+    private final long max;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+
+    public HistogramSnapshot(long count, long sum, long max, long p50, long p90, long p99, long p999) {
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+    }
+
+    public long getCount() { return count; }
+    public long getSum() { return sum; }
+    public long getMax() { return max; }
+    public double getMean() { return count == 0 ? 0.0 : (double) sum / count; }
+    public long getP50() { return p50; }
+    public long getP90() { return p90; }
+    public long getP99() { return p99; }
+    public long getP999() { return p999; }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " mean=" + (long) getMean() + " p50=" + p50 + " p90=" + p90
+                + " p99=" + p99 + " p999=" + p999 + " max=" + max;
+    }
+}
@@ -0,0 +1,52 @@
+package com.npl.metrics;
+
+public class MetricsSnapshot {
+    public final long interpretations;
+    public final long failures;
+    public final long tokens;
+    public final long statementsExecuted;
+    public final long outputBytes;
+    public final long allocatedBytes;
+
+    public final HistogramSnapshot lexNanos;
+    public final HistogramSnapshot parseNanos;
+    public final HistogramSnapshot typeCheckNanos;
+    public final HistogramSnapshot executeNanos;
+    public final HistogramSnapshot totalNanos;
+    public final HistogramSnapshot allocatedBytesPerExecution;
+
+    public MetricsSnapshot(long interpretations, long failures, long tokens, long statementsExecuted,
+                           long outputBytes, long allocatedBytes,
+                           HistogramSnapshot lexNanos, HistogramSnapshot parseNanos, HistogramSnapshot typeCheckNanos,
+                           HistogramSnapshot executeNanos, HistogramSnapshot totalNanos,
+                           HistogramSnapshot allocatedBytesPerExecution) {
+        this.interpretations = interpretations;
+        this.failures = failures;
+        this.tokens = tokens;
+        this.statementsExecuted = statementsExecuted;
+        this.outputBytes = outputBytes;
+        this.allocatedBytes = allocatedBytes;
+        this.lexNanos = lexNanos;
+        this.parseNanos = parseNanos;
+        this.typeCheckNanos = typeCheckNanos;
+        this.executeNanos = executeNanos;
+        this.totalNanos = totalNanos;
+        this.allocatedBytesPerExecution = allocatedBytesPerExecution;
+    }
+
+    @Override
+    public String toString() {
+        return "interpretations=" + interpretations + "\n"
+                + "failures=" + failures + "\n"
+                + "tokens=" + tokens + "\n"
+                + "statementsExecuted=" + statementsExecuted + "\n"
+                + "outputBytes=" + outputBytes + "\n"
+                + "allocatedBytes=" + allocatedBytes + "\n"
+                + "lex(ns): " + lexNanos + "\n"
+                + "parse(ns): " + parseNanos + "\n"
+                + "typecheck(ns): " + typeCheckNanos + "\n"
+                + "execute(ns): " + executeNanos + "\n"
+                + "total(ns): " + totalNanos + "\n"
+                + "allocated(bytes/exec): " + allocatedBytesPerExecution + "\n";
+    }
+}
@@ -0,0 +1,159 @@
+package com.npl.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class NPLMetrics implements NPLMetricsMXBean {
+    public static final String OBJECT_NAME = "com.npl:type=NPLMetrics";
+
+    private static final NPLMetrics INSTANCE = new NPLMetrics();
+
+    private volatile boolean enabled = true;
+
+    private final LongAdder interpretations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder statementsExecuted = new LongAdder();
+    private final LongAdder outputBytes = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private final Histogram lexNanos = new Histogram();
+    private final Histogram parseNanos = new Histogram();
+    private final Histogram typeCheckNanos = new Histogram();
+    private final Histogram executeNanos = new Histogram();
+    private final Histogram totalNanos = new Histogram();
+    private final Histogram allocatedBytesPerExecution = new Histogram();
+
+    private NPLMetrics() {
+    }
+
+    public static NPLMetrics get() {
+        return INSTANCE;
+    }
+
+    public static MetricsSnapshot snapshot() {
+        return INSTANCE.takeSnapshot();
+    }
+
+    // сам интерпретатор MBean не регистрирует: это делает хост, встраивающий NPL,
+    // а CLI — при запуске с --metrics
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // уже зарегистрирован
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to register metrics MBean: " + e.getMessage(), e);
+        }
+    }
+
+    // -1, если JVM не умеет считать аллокации по потокам
+    public long currentThreadAllocatedBytes() {
+        com.sun.management.ThreadMXBean bean = ThreadAllocation.BEAN;
+        if (bean == null) return -1;
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // ThreadMXBean тянет за собой java.management; загружается при первом замере,
+    // чтобы выключенные метрики не замедляли старт
+    private static final class ThreadAllocation {
+        static final com.sun.management.ThreadMXBean BEAN = init();
+
+        private static com.sun.management.ThreadMXBean init() {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+                    sunBean.setThreadAllocatedMemoryEnabled(true);
+                }
+                return sunBean;
+            }
+            return null;
+        }
+    }
+
+    // typeCheck < 0 — проверки типов не было (компактный режим)
+    public void recordInterpretation(long lex, long parse, long typeCheck, long execute, long total,
+                                     long tokenCount, long statements, long outBytes, long allocated) {
+        interpretations.increment();
+        tokens.add(tokenCount);
+        statementsExecuted.add(statements);
+        outputBytes.add(outBytes);
+        lexNanos.record(lex);
+        parseNanos.record(parse);
+        if (typeCheck >= 0) {
+            typeCheckNanos.record(typeCheck);
+        }
+        executeNanos.record(execute);
+        totalNanos.record(total);
+        if (allocated >= 0) {
+            allocatedBytes.add(allocated);
+            allocatedBytesPerExecution.record(allocated);
+        }
+    }
+
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    public static long utf8Length(CharSequence s) {
+        long n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n += 1;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else n += 3;
+        }
+        return n;
+    }
+
+    public MetricsSnapshot takeSnapshot() {
+        return new MetricsSnapshot(interpretations.sum(), failures.sum(), tokens.sum(),
+                statementsExecuted.sum(), outputBytes.sum(), allocatedBytes.sum(),
+                lexNanos.snapshot(), parseNanos.snapshot(), typeCheckNanos.snapshot(), executeNanos.snapshot(),
+                totalNanos.snapshot(), allocatedBytesPerExecution.snapshot());
+    }
+
+    @Override public long getInterpretations() { return interpretations.sum(); }
+    @Override public long getFailures() { return failures.sum(); }
+    @Override public long getTokens() { return tokens.sum(); }
+    @Override public long getStatementsExecuted() { return statementsExecuted.sum(); }
+    @Override public long getOutputBytes() { return outputBytes.sum(); }
+    @Override public long getAllocatedBytes() { return allocatedBytes.sum(); }
+
+    @Override public HistogramSnapshot getLexNanos() { return lexNanos.snapshot(); }
+    @Override public HistogramSnapshot getParseNanos() { return parseNanos.snapshot(); }
+    @Override public HistogramSnapshot getTypeCheckNanos() { return typeCheckNanos.snapshot(); }
+    @Override public HistogramSnapshot getExecuteNanos() { return executeNanos.snapshot(); }
+    @Override public HistogramSnapshot getTotalNanos() { return totalNanos.snapshot(); }
+    @Override public HistogramSnapshot getAllocatedBytesPerExecution() { return allocatedBytesPerExecution.snapshot(); }
+
+    @Override public boolean isEnabled() { return enabled; }
+    @Override public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    @Override
+    public void reset() {
+        interpretations.reset();
+        failures.reset();
+        tokens.reset();
+        statementsExecuted.reset();
+        outputBytes.reset();
+        allocatedBytes.reset();
+        lexNanos.reset();
+        parseNanos.reset();
+        typeCheckNanos.reset();
+        executeNanos.reset();
+        totalNanos.reset();
+        allocatedBytesPerExecution.reset();
+    }
+}
@@ -0,0 +1,21 @@
+package com.npl.metrics;
+
+public interface NPLMetricsMXBean {
+    long getInterpretations();
+    long getFailures();
+    long getTokens();
+    long getStatementsExecuted();
+    long getOutputBytes();
+    long getAllocatedBytes();
+
+    HistogramSnapshot getLexNanos();
+    HistogramSnapshot getParseNanos();
+    HistogramSnapshot getTypeCheckNanos();
+    HistogramSnapshot getExecuteNanos();
+    HistogramSnapshot getTotalNanos();
+    HistogramSnapshot getAllocatedBytesPerExecution();
+
+    boolean isEnabled();
+    void setEnabled(boolean enabled);
+    void reset();
+}
@@ -4,17 +4,33 @@ import com.npl.lexer.Lexer;
 import com.npl.lexer.Token;
 import com.npl.lexer.TokenType;
 import com.npl.ast.*;
+import com.npl.interop.NativeFunction;
+import com.npl.interop.NativeRegistry;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Parser {
     private final Lexer lexer;
+    // по сигнатурам функций parallel for решает, какие вызовы могут изменить общий словарь
+    private final NativeRegistry natives;
     private Token currentToken;
     private Token nextToken;
+    // имена, видимые в текущей позиции: всё встреченное раньше, кроме локальных переменных
+    // тел завершённых parallel for
+    private final Set<String> names = new HashSet<>();
 
     public Parser(Lexer lexer) {
+        this(lexer, NativeRegistry.global());
+    }
+
+    public Parser(Lexer lexer, NativeRegistry natives) {
         this.lexer = lexer;
+        this.natives = natives;
         currentToken = lexer.getNextToken();
         nextToken = lexer.getNextToken();
     }
@@ -40,20 +56,44 @@ public class Parser {
         return new Program(statements);
     }
 
+    // тот же разбор, но каждый оператор сразу переводится в FlatProgram
+    public FlatProgram parseFlatProgram() {
+        FlatBuilder builder = new FlatBuilder();
+        while (currentToken.type != TokenType.EOF) {
+            builder.add(parseStatement());
+        }
+        return builder.build();
+    }
+
     private Statement parseStatement() {
         switch (currentToken.type) {
             case PRINT:    return parsePrintStatement();
             case IF:       return parseIfStatement();
             case WHILE:    return parseWhileStatement();
-            case FOR:      return parseForStatement();
+            case FOR:      return parseForStatement(false);
+            case PARALLEL:
+                eat(TokenType.PARALLEL);
+                return parseForStatement(true);
             case IDENTIFIER:
                 String name = currentToken.text;
                 eat(TokenType.IDENTIFIER);
+                if (currentToken.type == TokenType.LPAREN) {
+                    Expression call = parseCall(name);
+                    eat(TokenType.SEMICOLON);
+                    return new ExpressionStatement(call);
+                }
+                names.add(name);
                 if (currentToken.type == TokenType.ASSIGN) {
                     return parseAssignmentStatement(name);
                 } else if (currentToken.type == TokenType.INCREMENT
                         || currentToken.type == TokenType.DECREMENT) {
                     return parsePostfixExpression(name);
+                } else if (isCompoundAssign(currentToken.type)) {
+                    Statement stmt = parseCompoundAssignment(name);
+                    eat(TokenType.SEMICOLON);
+                    return stmt;
+                } else if (currentToken.type == TokenType.LBRACKET) {
+                    return parseIndexAssignment(name);
                 } else {
                     Expression expr = parseExpression();
                     eat(TokenType.SEMICOLON);
@@ -106,6 +146,52 @@ public class Parser {
         return new PostfixExpressionStatement(varName, op);
     }
 
+    private static boolean isCompoundAssign(TokenType type) {
+        return type == TokenType.PLUS_ASSIGN || type == TokenType.MINUS_ASSIGN
+                || type == TokenType.MULT_ASSIGN || type == TokenType.DIV_ASSIGN;
+    }
+
+    private Statement parseCompoundAssignment(String varName) {
+        String op = currentToken.text.substring(0, 1);
+        eat(currentToken.type);
+        Expression expr = parseExpression();
+        return new CompoundAssignmentStatement(varName, op, expr);
+    }
+
+    // m[k] = v; m[k] += v; m[k]++; вложенные m[a][b] = v изменяют словарь m[a]
+    private Statement parseIndexAssignment(String varName) {
+        Expression target = new VariableExpression(varName);
+        Expression key = parseIndex();
+        while (currentToken.type == TokenType.LBRACKET) {
+            target = new IndexExpression(target, key);
+            key = parseIndex();
+        }
+        Statement stmt;
+        if (currentToken.type == TokenType.ASSIGN) {
+            eat(TokenType.ASSIGN);
+            stmt = new IndexAssignmentStatement(target, key, null, parseExpression());
+        } else if (isCompoundAssign(currentToken.type)) {
+            String op = currentToken.text.substring(0, 1);
+            eat(currentToken.type);
+            stmt = new IndexAssignmentStatement(target, key, op, parseExpression());
+        } else if (currentToken.type == TokenType.INCREMENT || currentToken.type == TokenType.DECREMENT) {
+            String op = currentToken.type == TokenType.INCREMENT ? "+" : "-";
+            eat(currentToken.type);
+            stmt = new IndexAssignmentStatement(target, key, op, new IntegerExpression(1));
+        } else {
+            throw new RuntimeException("Expected assignment after index but got " + currentToken.type);
+        }
+        eat(TokenType.SEMICOLON);
+        return stmt;
+    }
+
+    private Expression parseIndex() {
+        eat(TokenType.LBRACKET);
+        Expression key = parseExpression();
+        eat(TokenType.RBRACKET);
+        return key;
+    }
+
     private Statement parseIfStatement() {
         eat(TokenType.IF);
         eat(TokenType.LPAREN);
@@ -147,16 +233,24 @@ public class Parser {
         return new WhileStatement(condition, body);
     }
 
-    private Statement parseForStatement() {
+    private Statement parseForStatement(boolean parallel) {
+        Set<String> outer = parallel ? new HashSet<>(names) : null;
         eat(TokenType.FOR);
         eat(TokenType.LPAREN);
+        if (currentToken.type == TokenType.IDENTIFIER && nextToken.type == TokenType.IN) {
+            if (parallel) {
+                throw new RuntimeException("parallel for cannot iterate over a map");
+            }
+            return parseForInStatement();
+        }
 
         String initVar = currentToken.text;
         eat(TokenType.IDENTIFIER);
+        names.add(initVar);
         eat(TokenType.ASSIGN);
         Expression initExpr = parseExpression();
         eat(TokenType.SEMICOLON);
-        Statement initialization = new AssignmentStatement(initVar, initExpr);
+        AssignmentStatement initialization = new AssignmentStatement(initVar, initExpr);
 
         Expression condition = parseExpression();
         eat(TokenType.SEMICOLON);
@@ -164,6 +258,7 @@ public class Parser {
         Statement update;
         String updVar = currentToken.text;
         eat(TokenType.IDENTIFIER);
+        names.add(updVar);
         if (currentToken.type == TokenType.INCREMENT || currentToken.type == TokenType.DECREMENT) {
             TokenType op = currentToken.type;
             eat(op);
@@ -172,10 +267,17 @@ public class Parser {
             eat(TokenType.ASSIGN);
             Expression updExpr = parseExpression();
             update = new AssignmentStatement(updVar, updExpr);
+        } else if (isCompoundAssign(currentToken.type)) {
+            update = parseCompoundAssignment(updVar);
         } else {
             throw new RuntimeException("Unexpected token in for-update: " + currentToken);
         }
         eat(TokenType.RPAREN);
+
+        Map<String, String> reductions = new LinkedHashMap<>();
+        if (parallel && currentToken.type == TokenType.REDUCE) {
+            parseReductions(reductions);
+        }
         eat(TokenType.LBRACE);
 
         List<Statement> body = new ArrayList<>();
@@ -184,9 +286,463 @@ public class Parser {
         }
         eat(TokenType.RBRACE);
 
+        if (parallel) {
+            Statement pf = buildParallelFor(initialization, condition, update, body, reductions, outer);
+            // локальные переменные тела остаются в копиях у потоков и после цикла не видны,
+            // так что следующий parallel for может снова завести их у себя
+            names.clear();
+            names.addAll(outer);
+            names.add(initVar);
+            names.addAll(reductions.keySet());
+            return pf;
+        }
         return new ForStatement(initialization, condition, update, body);
     }
 
+    private Statement parseForInStatement() {
+        String var = currentToken.text;
+        eat(TokenType.IDENTIFIER);
+        names.add(var);
+        eat(TokenType.IN);
+        Expression iterable = parseExpression();
+        eat(TokenType.RPAREN);
+        eat(TokenType.LBRACE);
+
+        List<Statement> body = new ArrayList<>();
+        while (currentToken.type != TokenType.RBRACE) {
+            body.add(parseStatement());
+        }
+        eat(TokenType.RBRACE);
+        return new ForInStatement(var, iterable, body);
+    }
+
+    // reduce(sum s, max m)
+    private void parseReductions(Map<String, String> reductions) {
+        eat(TokenType.REDUCE);
+        eat(TokenType.LPAREN);
+        while (true) {
+            String kind = currentToken.text;
+            eat(TokenType.IDENTIFIER);
+            if (!kind.equals("sum") && !kind.equals("min") && !kind.equals("max")) {
+                throw new RuntimeException("Unknown reduction '" + kind + "', expected sum, min or max");
+            }
+            String var = currentToken.text;
+            eat(TokenType.IDENTIFIER);
+            names.add(var);
+            if (reductions.put(var, kind) != null) {
+                throw new RuntimeException("Duplicate reduction variable: " + var);
+            }
+            if (currentToken.type != TokenType.COMMA) {
+                break;
+            }
+            eat(TokenType.COMMA);
+        }
+        eat(TokenType.RPAREN);
+    }
+
+    private Statement buildParallelFor(AssignmentStatement initialization, Expression condition, Statement update,
+                                       List<Statement> body, Map<String, String> reductions, Set<String> outer) {
+        String var = initialization.variable;
+
+        if (!(condition instanceof BinaryExpression)
+                || !(((BinaryExpression) condition).left instanceof VariableExpression)
+                || !((VariableExpression) ((BinaryExpression) condition).left).name.equals(var)
+                || !(((BinaryExpression) condition).operator.equals("<")
+                    || ((BinaryExpression) condition).operator.equals("<="))) {
+            throw new RuntimeException("parallel for condition must be " + var + " < bound or " + var + " <= bound");
+        }
+        BinaryExpression cond = (BinaryExpression) condition;
+
+        // только целый шаг: дробный накапливал бы ошибку округления иначе, чем последовательный
+        // цикл, и число итераций могло бы разойтись
+        long step;
+        if (update instanceof PostfixExpressionStatement
+                && ((PostfixExpressionStatement) update).getVarName().equals(var)
+                && ((PostfixExpressionStatement) update).getOp() == TokenType.INCREMENT) {
+            step = 1;
+        } else if (update instanceof CompoundAssignmentStatement
+                && ((CompoundAssignmentStatement) update).variable.equals(var)
+                && ((CompoundAssignmentStatement) update).operator.equals("+")
+                && ((CompoundAssignmentStatement) update).expression instanceof IntegerExpression
+                && ((IntegerExpression) ((CompoundAssignmentStatement) update).expression).value > 0) {
+            step = ((IntegerExpression) ((CompoundAssignmentStatement) update).expression).value;
+        } else {
+            throw new RuntimeException("parallel for update must be " + var + "++ or " + var
+                    + " += <positive integer>");
+        }
+
+        if (reductions.containsKey(var)) {
+            throw new RuntimeException("Loop variable cannot be a reduction: " + var);
+        }
+        checkReductionUses(body, reductions);
+        List<Statement> statements = new ArrayList<>();
+        flatten(body, statements);
+        for (Statement stmt : statements) {
+            String w = writtenVariable(stmt);
+            if (w == null) {
+                continue;
+            }
+            if (w.equals(var)) {
+                throw new RuntimeException("parallel for body cannot assign the loop variable '" + var + "'");
+            }
+            if (!reductions.containsKey(w) && outer.contains(w)) {
+                throw new RuntimeException("parallel for body cannot write shared variable '" + w
+                        + "'; declare it in reduce(...)");
+            }
+        }
+        checkMapMutations(statements, var, outer);
+        return new ParallelForStatement(initialization, condition, update, body,
+                cond.right, cond.operator.equals("<="), step, reductions);
+    }
+
+    // значение числового литерала или NaN
+    private static double literalValue(Expression expr) {
+        if (expr instanceof IntegerExpression) {
+            return ((IntegerExpression) expr).value;
+        } else if (expr instanceof NumberExpression) {
+            return ((NumberExpression) expr).value;
+        }
+        return Double.NaN;
+    }
+
+    // все операторы тела, включая вложенные
+    private static void flatten(List<Statement> statements, List<Statement> out) {
+        for (Statement stmt : statements) {
+            out.add(stmt);
+            if (stmt instanceof IfStatement) {
+                flatten(((IfStatement) stmt).thenBranch, out);
+                if (((IfStatement) stmt).elseBranch != null) {
+                    flatten(((IfStatement) stmt).elseBranch, out);
+                }
+            } else if (stmt instanceof WhileStatement) {
+                flatten(((WhileStatement) stmt).body, out);
+            } else if (stmt instanceof ForStatement) {
+                ForStatement fs = (ForStatement) stmt;
+                flatten(List.of(fs.initialization, fs.update), out);
+                flatten(fs.body, out);
+            } else if (stmt instanceof ForInStatement) {
+                flatten(((ForInStatement) stmt).body, out);
+            }
+        }
+    }
+
+    // переменная, которой оператор присваивает значение, или null
+    private static String writtenVariable(Statement stmt) {
+        if (stmt instanceof AssignmentStatement) {
+            return ((AssignmentStatement) stmt).variable;
+        } else if (stmt instanceof CompoundAssignmentStatement) {
+            return ((CompoundAssignmentStatement) stmt).variable;
+        } else if (stmt instanceof PostfixExpressionStatement) {
+            return ((PostfixExpressionStatement) stmt).getVarName();
+        } else if (stmt instanceof ForInStatement) {
+            return ((ForInStatement) stmt).variable;
+        }
+        return null;
+    }
+
+    // выражения самого оператора, без вложенных операторов
+    private static List<Expression> expressionsOf(Statement stmt) {
+        if (stmt instanceof PrintStatement) {
+            List<Expression> result = new ArrayList<>(((PrintStatement) stmt).expressions);
+            result.add(((PrintStatement) stmt).end);
+            return result;
+        } else if (stmt instanceof AssignmentStatement) {
+            return List.of(((AssignmentStatement) stmt).expression);
+        } else if (stmt instanceof CompoundAssignmentStatement) {
+            return List.of(((CompoundAssignmentStatement) stmt).expression);
+        } else if (stmt instanceof IndexAssignmentStatement) {
+            IndexAssignmentStatement is = (IndexAssignmentStatement) stmt;
+            return List.of(is.target, is.key, is.expression);
+        } else if (stmt instanceof IfStatement) {
+            return List.of(((IfStatement) stmt).condition);
+        } else if (stmt instanceof WhileStatement) {
+            return List.of(((WhileStatement) stmt).condition);
+        } else if (stmt instanceof ForStatement) {
+            return List.of(((ForStatement) stmt).condition);
+        } else if (stmt instanceof ForInStatement) {
+            return List.of(((ForInStatement) stmt).iterable);
+        } else if (stmt instanceof ExpressionStatement) {
+            return List.of(((ExpressionStatement) stmt).expression);
+        }
+        return List.of();
+    }
+
+    // NPLMap не синхронизирован, а словари снаружи цикла видны всем потокам, в том числе
+    // через псевдонимы (a = m) и вложенные словари (m[k]). Поэтому проверка консервативна:
+    // m[k] = v разрешено только для переменной тела, которой присваиваются лишь литералы {...},
+    // а в аргументы, которые функция может изменить, нельзя передавать то, что может оказаться общим словарём
+    private void checkMapMutations(List<Statement> statements, String loopVar, Set<String> outer) {
+        Set<String> fresh = new HashSet<>();
+        Set<String> notFresh = new HashSet<>();
+        Set<String> safe = new HashSet<>();
+        for (Statement stmt : statements) {
+            String w = writtenVariable(stmt);
+            if (w == null || outer.contains(w)) {
+                continue;
+            }
+            safe.add(w);
+            if (stmt instanceof AssignmentStatement && ((AssignmentStatement) stmt).expression instanceof MapExpression) {
+                fresh.add(w);
+            } else {
+                notFresh.add(w);
+            }
+        }
+        fresh.removeAll(notFresh);
+        safe.add(loopVar);
+        // safe — переменные, которые точно не держат общий словарь; присваивание или запись
+        // в словарь значения, которое может быть общим, исключает переменную
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Statement stmt : statements) {
+                String v = null;
+                if (stmt instanceof AssignmentStatement
+                        && mayBeShared(((AssignmentStatement) stmt).expression, safe)) {
+                    v = ((AssignmentStatement) stmt).variable;
+                } else if (stmt instanceof IndexAssignmentStatement
+                        && ((IndexAssignmentStatement) stmt).target instanceof VariableExpression
+                        && mayBeShared(((IndexAssignmentStatement) stmt).expression, safe)) {
+                    v = ((VariableExpression) ((IndexAssignmentStatement) stmt).target).name;
+                }
+                if (v != null && safe.remove(v)) {
+                    changed = true;
+                }
+            }
+        }
+
+        for (Statement stmt : statements) {
+            if (stmt instanceof IndexAssignmentStatement) {
+                checkFreshMap(((IndexAssignmentStatement) stmt).target, fresh);
+            }
+            for (Expression expr : expressionsOf(stmt)) {
+                checkCalls(expr, safe);
+            }
+        }
+    }
+
+    private void checkCalls(Expression expr, Set<String> safe) {
+        if (expr instanceof CallExpression) {
+            CallExpression call = (CallExpression) expr;
+            NativeFunction fn = natives.lookup(call.name);
+            for (int i = 0; i < call.arguments.size(); i++) {
+                boolean written = fn == null || i >= fn.arity || fn.mayWriteParameter(i);
+                if (written && mayBeShared(call.arguments.get(i), safe)) {
+                    throw new RuntimeException("parallel for body cannot pass a value that may be a shared map to '"
+                            + call.name + "'");
+                }
+            }
+        }
+        for (Expression child : children(expr)) {
+            checkCalls(child, safe);
+        }
+    }
+
+    private static void checkFreshMap(Expression target, Set<String> fresh) {
+        if (target instanceof VariableExpression && fresh.contains(((VariableExpression) target).name)) {
+            return;
+        }
+        while (target instanceof IndexExpression) {
+            target = ((IndexExpression) target).target;
+        }
+        String name = target instanceof VariableExpression ? "'" + ((VariableExpression) target).name + "'" : "a map";
+        throw new RuntimeException("parallel for body cannot modify " + name
+                + "; only maps assigned from a {...} literal in the body can be modified");
+    }
+
+    // может ли значение оказаться словарём, созданным вне текущего куска
+    private boolean mayBeShared(Expression expr, Set<String> safe) {
+        if (expr instanceof VariableExpression) {
+            return !safe.contains(((VariableExpression) expr).name);
+        } else if (expr instanceof IndexExpression) {
+            return true;
+        } else if (expr instanceof CallExpression) {
+            NativeFunction fn = natives.lookup(((CallExpression) expr).name);
+            return fn == null || fn.mayReturnMap();
+        } else if (expr instanceof MapExpression) {
+            for (Expression value : ((MapExpression) expr).values) {
+                if (mayBeShared(value, safe)) {
+                    return true;
+                }
+            }
+        }
+        // литералы, арифметика и сравнения
+        return false;
+    }
+
+    // переменные редукции в теле только накапливаются: sum — s += e, s -= e или s = s + e,
+    // min/max — if (x < m) { m = x; } (для max — '>'). Каждый кусок начинает с нейтрального
+    // значения, поэтому любое другое чтение увидело бы частичный результат, а запись сломала бы свёртку
+    private static void checkReductionUses(List<Statement> statements, Map<String, String> reductions) {
+        for (Statement stmt : statements) {
+            if (isReductionUpdate(stmt, reductions)) {
+                continue;
+            }
+            if (stmt instanceof PrintStatement) {
+                for (Expression expr : ((PrintStatement) stmt).expressions) {
+                    checkNoReductionRead(expr, reductions);
+                }
+                checkNoReductionRead(((PrintStatement) stmt).end, reductions);
+            } else if (stmt instanceof AssignmentStatement) {
+                AssignmentStatement as = (AssignmentStatement) stmt;
+                checkNoReductionWrite(as.variable, reductions);
+                checkNoReductionRead(as.expression, reductions);
+            } else if (stmt instanceof CompoundAssignmentStatement) {
+                CompoundAssignmentStatement cs = (CompoundAssignmentStatement) stmt;
+                checkNoReductionWrite(cs.variable, reductions);
+                checkNoReductionRead(cs.expression, reductions);
+            } else if (stmt instanceof PostfixExpressionStatement) {
+                checkNoReductionWrite(((PostfixExpressionStatement) stmt).getVarName(), reductions);
+            } else if (stmt instanceof IndexAssignmentStatement) {
+                IndexAssignmentStatement is = (IndexAssignmentStatement) stmt;
+                checkNoReductionRead(is.target, reductions);
+                checkNoReductionRead(is.key, reductions);
+                checkNoReductionRead(is.expression, reductions);
+            } else if (stmt instanceof IfStatement) {
+                IfStatement is = (IfStatement) stmt;
+                checkNoReductionRead(is.condition, reductions);
+                checkReductionUses(is.thenBranch, reductions);
+                if (is.elseBranch != null) {
+                    checkReductionUses(is.elseBranch, reductions);
+                }
+            } else if (stmt instanceof WhileStatement) {
+                checkNoReductionRead(((WhileStatement) stmt).condition, reductions);
+                checkReductionUses(((WhileStatement) stmt).body, reductions);
+            } else if (stmt instanceof ForStatement) {
+                ForStatement fs = (ForStatement) stmt;
+                checkReductionUses(List.of(fs.initialization, fs.update), reductions);
+                checkNoReductionRead(fs.condition, reductions);
+                checkReductionUses(fs.body, reductions);
+            } else if (stmt instanceof ForInStatement) {
+                ForInStatement fs = (ForInStatement) stmt;
+                checkNoReductionWrite(fs.variable, reductions);
+                checkNoReductionRead(fs.iterable, reductions);
+                checkReductionUses(fs.body, reductions);
+            } else if (stmt instanceof ExpressionStatement) {
+                checkNoReductionRead(((ExpressionStatement) stmt).expression, reductions);
+            }
+        }
+    }
+
+    private static boolean isReductionUpdate(Statement stmt, Map<String, String> reductions) {
+        if (stmt instanceof CompoundAssignmentStatement) {
+            CompoundAssignmentStatement cs = (CompoundAssignmentStatement) stmt;
+            return "sum".equals(reductions.get(cs.variable))
+                    && (cs.operator.equals("+") || cs.operator.equals("-"))
+                    && reductionRead(cs.expression, reductions) == null;
+        }
+        if (stmt instanceof AssignmentStatement) {
+            AssignmentStatement as = (AssignmentStatement) stmt;
+            if (!"sum".equals(reductions.get(as.variable)) || !(as.expression instanceof BinaryExpression)) {
+                return false;
+            }
+            BinaryExpression be = (BinaryExpression) as.expression;
+            return be.operator.equals("+") && isVariable(be.left, as.variable)
+                    && reductionRead(be.right, reductions) == null;
+        }
+        if (!(stmt instanceof IfStatement)) {
+            return false;
+        }
+        // if (x < m) { m = x; }, сравнение можно записать и как m > x
+        IfStatement is = (IfStatement) stmt;
+        if (is.elseBranch != null || is.thenBranch.size() != 1
+                || !(is.thenBranch.get(0) instanceof AssignmentStatement)
+                || !(is.condition instanceof BinaryExpression)) {
+            return false;
+        }
+        AssignmentStatement as = (AssignmentStatement) is.thenBranch.get(0);
+        String kind = reductions.get(as.variable);
+        if (!"min".equals(kind) && !"max".equals(kind)) {
+            return false;
+        }
+        BinaryExpression cond = (BinaryExpression) is.condition;
+        Expression candidate;
+        String op;
+        if (isVariable(cond.right, as.variable)) {
+            candidate = cond.left;
+            op = cond.operator;
+        } else if (isVariable(cond.left, as.variable)) {
+            // m > x — то же, что x < m
+            candidate = cond.right;
+            op = cond.operator.replace('<', '!').replace('>', '<').replace('!', '>');
+        } else {
+            return false;
+        }
+        boolean matches = kind.equals("min")
+                ? op.equals("<") || op.equals("<=")
+                : op.equals(">") || op.equals(">=");
+        return matches && sameOperand(candidate, as.expression)
+                && reductionRead(candidate, reductions) == null;
+    }
+
+    // сравниваемое и присваиваемое значения должны совпадать: переменная или числовой литерал
+    private static boolean sameOperand(Expression a, Expression b) {
+        if (a instanceof VariableExpression) {
+            return isVariable(b, ((VariableExpression) a).name);
+        }
+        double value = literalValue(a);
+        return !Double.isNaN(value) && literalValue(b) == value && a.getClass() == b.getClass();
+    }
+
+    private static boolean isVariable(Expression expr, String name) {
+        return expr instanceof VariableExpression && ((VariableExpression) expr).name.equals(name);
+    }
+
+    private static void checkNoReductionWrite(String variable, Map<String, String> reductions) {
+        if (reductions.containsKey(variable)) {
+            throw reductionMisuse(variable, reductions.get(variable));
+        }
+    }
+
+    private static void checkNoReductionRead(Expression expr, Map<String, String> reductions) {
+        String name = reductionRead(expr, reductions);
+        if (name != null) {
+            throw reductionMisuse(name, reductions.get(name));
+        }
+    }
+
+    private static RuntimeException reductionMisuse(String name, String kind) {
+        String form;
+        switch (kind) {
+            case "min": form = "if (x < " + name + ") { " + name + " = x; }"; break;
+            case "max": form = "if (x > " + name + ") { " + name + " = x; }"; break;
+            default:    form = name + " += e, " + name + " -= e or " + name + " = " + name + " + e";
+        }
+        return new RuntimeException("parallel for body can only update " + kind + " variable '" + name
+                + "' as " + form);
+    }
+
+    // первая переменная редукции, которую читает выражение, или null
+    private static String reductionRead(Expression expr, Map<String, String> reductions) {
+        if (expr instanceof VariableExpression) {
+            String name = ((VariableExpression) expr).name;
+            return reductions.containsKey(name) ? name : null;
+        }
+        for (Expression child : children(expr)) {
+            String name = reductionRead(child, reductions);
+            if (name != null) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static List<Expression> children(Expression expr) {
+        if (expr instanceof BinaryExpression) {
+            return List.of(((BinaryExpression) expr).left, ((BinaryExpression) expr).right);
+        } else if (expr instanceof CallExpression) {
+            return ((CallExpression) expr).arguments;
+        } else if (expr instanceof IndexExpression) {
+            return List.of(((IndexExpression) expr).target, ((IndexExpression) expr).key);
+        } else if (expr instanceof MapExpression) {
+            List<Expression> result = new ArrayList<>(((MapExpression) expr).keys);
+            result.addAll(((MapExpression) expr).values);
+            return result;
+        } else if (expr instanceof PostfixExpression) {
+            return List.of(((PostfixExpression) expr).expression);
+        }
+        return List.of();
+    }
+
     // выражения
     private Expression parseExpression() {
         return parseOr();
@@ -265,19 +821,71 @@ public class Parser {
         return expr;
     }
 
+    private Expression parseCall(String name) {
+        eat(TokenType.LPAREN);
+        List<Expression> args = new ArrayList<>();
+        if (currentToken.type != TokenType.RPAREN) {
+            args.add(parseExpression());
+            while (currentToken.type == TokenType.COMMA) {
+                eat(TokenType.COMMA);
+                args.add(parseExpression());
+            }
+        }
+        eat(TokenType.RPAREN);
+        return new CallExpression(name, args);
+    }
+
     private Expression parsePrimary() {
+        Expression expr = parseAtom();
+        while (currentToken.type == TokenType.LBRACKET) {
+            expr = new IndexExpression(expr, parseIndex());
+        }
+        return expr;
+    }
+
+    // {k1: v1, k2: v2}, допускается запятая в конце
+    private Expression parseMapLiteral() {
+        eat(TokenType.LBRACE);
+        List<Expression> keys = new ArrayList<>();
+        List<Expression> values = new ArrayList<>();
+        while (currentToken.type != TokenType.RBRACE) {
+            keys.add(parseExpression());
+            eat(TokenType.COLON);
+            values.add(parseExpression());
+            if (currentToken.type != TokenType.COMMA) {
+                break;
+            }
+            eat(TokenType.COMMA);
+        }
+        eat(TokenType.RBRACE);
+        return new MapExpression(keys, values);
+    }
+
+    private Expression parseAtom() {
         switch (currentToken.type) {
             case STRING:
                 String s = currentToken.text;
                 eat(TokenType.STRING);
                 return new StringExpression(s);
             case NUMBER:
-                double v = Double.parseDouble(currentToken.text);
+                String text = currentToken.text;
                 eat(TokenType.NUMBER);
-                return new NumberExpression(v);
+                if (text.indexOf('.') >= 0) {
+                    return new NumberExpression(Double.parseDouble(text));
+                }
+                try {
+                    return new IntegerExpression(Long.parseLong(text));
+                } catch (NumberFormatException e) {
+                    // вне диапазона long литерал остаётся double, как было до появления целых
+                    return new NumberExpression(Double.parseDouble(text));
+                }
             case IDENTIFIER:
                 String name = currentToken.text;
                 eat(TokenType.IDENTIFIER);
+                if (currentToken.type == TokenType.LPAREN) {
+                    return parseCall(name);
+                }
+                names.add(name);
                 return new VariableExpression(name);
             case TRUE:
                 eat(TokenType.TRUE);
@@ -293,6 +901,8 @@ public class Parser {
                 Expression inner = parseExpression();
                 eat(TokenType.RPAREN);
                 return inner;
+            case LBRACE:
+                return parseMapLiteral();
             default:
                 throw new RuntimeException("Unexpected token in expression: " + currentToken);
         }